@@ -1,24 +1,42 @@
 package com.github.oowekyala.rxstring;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.Function;
+
 import org.reactfx.Subscription;
-import org.reactfx.collection.LiveArrayList;
-import org.reactfx.collection.LiveList;
 import org.reactfx.value.Val;
 
 import com.github.oowekyala.rxstring.ReactfxExtensions.RebindSubscription;
+import javafx.beans.value.ObservableNumberValue;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
 
 
 /**
- * Extracts a LiveList[Val[String]] from a data context and binds its values.
- * Used by the {@link BoundLiveTemplate}, created by the {@link LiveTemplateBuilderImpl}.
+ * One step of a {@link TemplatePlan}. Bindings are created by the {@link LiveTemplateBuilderImpl},
+ * and interpreted by the {@link BoundLiveTemplate}, which switches on their {@link #kind()}.
+ * Each kind is implemented by a single final class, so that the interpreter's calls are monomorphic.
  *
  * @author Clément Fournier
  * @since 1.0
  */
-@FunctionalInterface
 interface BindingExtractor<D> {
 
-    LiveList<Val<String>> extract(D context);
+    /** Returns the kind of this binding, which determines its implementation class. */
+    Kind kind();
+
+
+    /**
+     * Renders the text of this binding for the given context as plain text, without
+     * observing anything, see {@link TemplatePlan#snapshot(Object)}. Returns null if
+     * the binding can only be rendered by binding it.
+     */
+    String snapshot(D context);
 
 
     /**
@@ -31,10 +49,25 @@ interface BindingExtractor<D> {
                                                          ValIdx valIdx) {
 
         valIdx.replaceValue(val.getValue());
+        return subscribeSingleVal(parent, val, valIdx);
+    }
+
 
+    /**
+     * Like {@link #bindSingleVal(LiveTemplate, Val, ValIdx)}, for a range that
+     * already contains the current text of the Val.
+     */
+    static RebindSubscription<Val<String>> subscribeSingleVal(LiveTemplate<?> parent,
+                                                              Val<String> val,
+                                                              ValIdx valIdx) {
         if (val instanceof LiveTemplateImpl) {
             LiveTemplateImpl<?> subTemplate = (LiveTemplateImpl<?>) val;
 
+            if (subTemplate.isCached() && subTemplate.isAttached()) {
+                // the same item is shown twice, the text is the same but it needs its own subtemplate
+                subTemplate = subTemplate.copyForCache();
+            }
+
             // initialise a new subtemplate
 
             // the subtemplate inherits some config properties from its outer parents,
@@ -55,20 +88,18 @@ interface BindingExtractor<D> {
     static RebindSubscription<Val<String>> templateRebindSub(LiveTemplate<?> parent,
                                                              LiveTemplateImpl<?> subTemplate,
                                                              ValIdx valIdx) {
-        return RebindSubscription.make(() -> {
-            subTemplate.dataContextProperty().unbind();
-            subTemplate.setDataContext(null);
-        }, newItem -> {
+        return RebindSubscription.make(subTemplate::release, newItem -> {
 
-            if (newItem instanceof LiveTemplateImpl) {
+            if (newItem instanceof LiveTemplateImpl && !((LiveTemplateImpl<?>) newItem).isCached()) {
                 // rebind the existing subtemplate
 
                 subTemplate.importConfigFrom(parent);
                 subTemplate.rebind((LiveTemplateImpl<?>) newItem);
                 return templateRebindSub(parent, subTemplate, valIdx);
             } else {
-                subTemplate.dataContextProperty().unbind();
-                subTemplate.setDataContext(null);
+                // cached subtemplates are already bound, so they're swapped in
+                // instead of rebinding this one, which may be parked in turn
+                subTemplate.release();
                 return bindSingleVal(parent, newItem, valIdx);
             }
         });
@@ -78,10 +109,38 @@ interface BindingExtractor<D> {
     static RebindSubscription<Val<String>> valRebindSub(LiveTemplate<?> parent,
                                                         Val<String> someVal,
                                                         ValIdx valIdx) {
-        Subscription sub = someVal.orElseConst("") // so that the values in changes are never null
-                                  .changes()
-                                  .subscribe(change -> valIdx.replaceValue(change.getNewValue()));
+        Subscription sub;
+        if (someVal instanceof EscapedVal) {
+            EscapedVal escaped = (EscapedVal) someVal;
+            // only the changed slice is escaped again
+            sub = escaped.observeEdits(valIdx::replaceRelative);
+        } else {
+            sub = someVal.orElseConst("") // so that the values in changes are never null
+                         .changes()
+                         .subscribe(change -> valIdx.replaceValue(change.getNewValue()));
+        }
 
+        return rebindingSub(parent, sub, valIdx);
+    }
+
+
+    /**
+     * Like {@link #bindSingleVal(LiveTemplate, Val, ValIdx)} for an escaped value, during the
+     * initial bind of a template, when the range is at the end of the buffer. The value is
+     * escaped directly into the buffer of the template.
+     */
+    static RebindSubscription<Val<String>> appendEscapedVal(LiveTemplate<?> parent,
+                                                            EscapedVal val,
+                                                            ValIdx valIdx) {
+        Subscription sub = valIdx.appendDirectly(out -> val.appendAndObserveEdits(out, valIdx::replaceRelative));
+        return rebindingSub(parent, sub, valIdx);
+    }
+
+
+    /** Rebinds the range to another Val once the given subscription to the previous one is dropped. */
+    static RebindSubscription<Val<String>> rebindingSub(LiveTemplate<?> parent,
+                                                        Subscription sub,
+                                                        ValIdx valIdx) {
         return RebindSubscription.make(sub, newItem -> {
             sub.unsubscribe();
             valIdx.replaceValue(newItem.getValue());
@@ -95,6 +154,43 @@ interface BindingExtractor<D> {
     }
 
 
+    /** Renders the given items with an item renderer, and concatenates their text. Null if one can't be rendered. */
+    static <T> String snapshotAll(ItemRenderer<? super T> renderer, LiveTemplateBuilder<?> builder, List<? extends T> items) {
+        StringBuilder text = new StringBuilder();
+        for (T item : items) {
+            String itemText = renderer.snapshot(builder, item);
+            if (itemText == null) {
+                return null;
+            }
+            text.append(itemText);
+        }
+        return text.toString();
+    }
+
+
+    /** Kinds of bindings. */
+    enum Kind {
+        /** A {@link ConstantBinding}. */
+        CONSTANT,
+        /** A {@link ValueBinding}. */
+        VALUE,
+        /** A {@link NumberBinding}. */
+        NUMBER,
+        /** A {@link SeqBinding}. */
+        SEQUENCE,
+        /** A {@link KeyedSeqBinding}. */
+        KEYED_SEQUENCE,
+        /** A {@link SortedSeqBinding}. */
+        SORTED_SEQUENCE,
+        /** A {@link GroupedSeqBinding}. */
+        GROUPED_SEQUENCE,
+        /** A {@link TemplateBinding}. */
+        TEMPLATE,
+        /** A {@link ScopedBinding}. Those are compiled away by the {@link TemplatePlan}. */
+        SCOPED
+    }
+
+
     /**
      * Represents a constant binding. Distinct from the others because it allows
      * to compact them in the {@link LiveTemplateBuilderImpl}.
@@ -111,8 +207,496 @@ interface BindingExtractor<D> {
 
 
         @Override
-        public LiveList<Val<String>> extract(D context) {
-            return new LiveArrayList<>(Val.constant(constant));
+        public Kind kind() {
+            return Kind.CONSTANT;
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            return constant;
+        }
+    }
+
+
+    /**
+     * A single observable value, rendered with an item renderer.
+     *
+     * @param <D> Type of data context
+     * @param <T> Type of the value
+     */
+    final class ValueBinding<D, T> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends ObservableValue<? extends T>> myExtractor;
+        private final ItemRenderer<? super T> myRenderer;
+        private final LiveTemplateBuilder<?> myBuilder;
+
+
+        ValueBinding(Function<? super D, ? extends ObservableValue<? extends T>> extractor,
+                     ItemRenderer<? super T> renderer,
+                     LiveTemplateBuilder<?> builder) {
+            this.myExtractor = extractor;
+            this.myRenderer = renderer;
+            this.myBuilder = builder;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.VALUE;
+        }
+
+
+        /** Renders the value extracted from the given context. */
+        Val<String> render(D context) {
+            return myRenderer.apply(myBuilder, myExtractor.apply(context));
+        }
+
+
+        /** Extracts the observable value from the given context. */
+        ObservableValue<? extends T> extract(D context) {
+            return myExtractor.apply(context);
+        }
+
+
+        /** Whether the text of this binding only depends on the extracted value, see {@link ItemRenderer#isValueFunction()}. */
+        boolean isValueFunction() {
+            return myRenderer.isValueFunction();
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            return myRenderer.snapshot(myBuilder, extract(context).getValue());
+        }
+
+
+        /** Renders a value extracted by this binding as plain text, like {@link #snapshot(Object)}. */
+        @SuppressWarnings("unchecked")
+        String snapshotValue(Object value) {
+            return myRenderer.snapshot(myBuilder, (T) value);
+        }
+
+
+        /**
+         * Compiles this binding. If the renderer is a plain sub-template, then
+         * this is turned into a {@link TemplateBinding}.
+         */
+        BindingExtractor<D> compile() {
+            return myRenderer.isTemplated() ? new TemplateBinding<>(myExtractor, myRenderer, myBuilder) : this;
+        }
+    }
+
+
+    /**
+     * A single observable number, formatted without boxing. See {@link NumberText}.
+     *
+     * @param <D> Type of data context
+     */
+    final class NumberBinding<D> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends ObservableNumberValue> myExtractor;
+        private final NumberText.Format myFormat;
+
+
+        NumberBinding(Function<? super D, ? extends ObservableNumberValue> extractor, NumberText.Format format) {
+            this.myExtractor = extractor;
+            this.myFormat = format;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.NUMBER;
+        }
+
+
+        /** Extracts the number from the given context. */
+        ObservableNumberValue extract(D context) {
+            return myExtractor.apply(context);
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            StringBuilder text = new StringBuilder();
+            myFormat.format(extract(context), text);
+            return text.toString();
+        }
+
+
+        NumberText.Format getFormat() {
+            return myFormat;
+        }
+    }
+
+
+    /**
+     * An observable list of items, rendered with a seq renderer.
+     *
+     * @param <D> Type of data context
+     * @param <T> Type of the items
+     */
+    final class SeqBinding<D, T> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends ObservableList<? extends T>> myExtractor;
+        private final SeqRenderer<? super T> myRenderer;
+        private final String myDelimiter;
+        private final LiveTemplateBuilder<?> myBuilder;
+
+
+        SeqBinding(Function<? super D, ? extends ObservableList<? extends T>> extractor,
+                   SeqRenderer<? super T> renderer,
+                   String delimiter,
+                   LiveTemplateBuilder<?> builder) {
+            this.myExtractor = extractor;
+            this.myRenderer = renderer;
+            this.myDelimiter = delimiter;
+            this.myBuilder = builder;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.SEQUENCE;
+        }
+
+
+        /** Extracts the list of rendered items from the given context. */
+        ObservableList<Val<String>> extract(D context) {
+            return myRenderer.renderItems(myBuilder, myExtractor.apply(context));
+        }
+
+
+        /** Text written between consecutive items, possibly empty. */
+        String getDelimiter() {
+            return myDelimiter;
+        }
+
+
+        /** Whether empty constant elements must be filtered out, see {@link SeqRenderer#rendersConstants()}. */
+        boolean needsFiltering() {
+            return myRenderer.rendersConstants();
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            List<String> texts = myRenderer.snapshot(myBuilder, myExtractor.apply(context));
+            if (texts == null) {
+                return null;
+            }
+            if (needsFiltering()) {
+                // items of a sequence are constants, so the empty ones are filtered out
+                texts.removeIf(String::isEmpty);
+            }
+            return String.join(myDelimiter, texts);
+        }
+    }
+
+
+    /**
+     * An observable list of items, whose elements are reconciled by key.
+     * See {@link KeyedSequence}.
+     *
+     * @param <D> Type of data context
+     * @param <T> Type of the items
+     */
+    final class KeyedSeqBinding<D, T> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends ObservableList<? extends T>> myExtractor;
+        private final Function<? super T, ?> myKeyFunction;
+        private final ItemRenderer<? super T> myRenderer;
+        private final LiveTemplateBuilder<?> myBuilder;
+
+
+        KeyedSeqBinding(Function<? super D, ? extends ObservableList<? extends T>> extractor,
+                        Function<? super T, ?> keyFunction,
+                        ItemRenderer<? super T> renderer,
+                        LiveTemplateBuilder<?> builder) {
+            this.myExtractor = extractor;
+            this.myKeyFunction = keyFunction;
+            this.myRenderer = renderer;
+            this.myBuilder = builder;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.KEYED_SEQUENCE;
+        }
+
+
+        /** Extracts the list of items from the given context. */
+        ObservableList<? extends T> extract(D context) {
+            return myExtractor.apply(context);
+        }
+
+
+        Function<? super T, ?> getKeyFunction() {
+            return myKeyFunction;
+        }
+
+
+        /** Renders an item, the observable is updated when the item is replaced by another with the same key. */
+        Val<String> render(Val<T> item) {
+            return myRenderer.apply(myBuilder, item);
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            return snapshotAll(myRenderer, myBuilder, extract(context));
+        }
+    }
+
+
+    /**
+     * An observable list of items, whose elements are sorted by an observable key.
+     * See {@link SortedSequence}.
+     *
+     * @param <D> Type of data context
+     * @param <T> Type of the items
+     * @param <K> Type of the sort keys
+     */
+    final class SortedSeqBinding<D, T, K> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends ObservableList<? extends T>> myExtractor;
+        private final Function<? super T, ? extends ObservableValue<? extends K>> myKeyExtractor;
+        private final Comparator<? super K> myComparator;
+        private final ItemRenderer<? super T> myRenderer;
+        private final LiveTemplateBuilder<?> myBuilder;
+
+
+        SortedSeqBinding(Function<? super D, ? extends ObservableList<? extends T>> extractor,
+                         Function<? super T, ? extends ObservableValue<? extends K>> keyExtractor,
+                         Comparator<? super K> comparator,
+                         ItemRenderer<? super T> renderer,
+                         LiveTemplateBuilder<?> builder) {
+            this.myExtractor = extractor;
+            this.myKeyExtractor = keyExtractor;
+            this.myComparator = comparator;
+            this.myRenderer = renderer;
+            this.myBuilder = builder;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.SORTED_SEQUENCE;
+        }
+
+
+        /** Extracts the list of items from the given context. */
+        ObservableList<? extends T> extract(D context) {
+            return myExtractor.apply(context);
+        }
+
+
+        Function<? super T, ? extends ObservableValue<? extends K>> getKeyExtractor() {
+            return myKeyExtractor;
+        }
+
+
+        Comparator<? super K> getComparator() {
+            return myComparator;
+        }
+
+
+        Val<String> render(T item) {
+            return myRenderer.apply(myBuilder, Val.constant(item));
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            List<T> sorted = new ArrayList<>(extract(context));
+            // the sort is stable, and null keys go last, like in the sorted sequence
+            sorted.sort(Comparator.comparing(t -> myKeyExtractor.apply(t).getValue(), Comparator.nullsLast(myComparator)));
+            return snapshotAll(myRenderer, myBuilder, sorted);
+        }
+    }
+
+
+    /**
+     * An observable list of items, which are displayed in groups that share
+     * an observable key. See {@link GroupedSequence}.
+     *
+     * @param <D> Type of data context
+     * @param <T> Type of the items
+     * @param <K> Type of the group keys
+     */
+    final class GroupedSeqBinding<D, T, K> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends ObservableList<? extends T>> myExtractor;
+        private final Function<? super T, ? extends ObservableValue<? extends K>> myKeyExtractor;
+        private final ItemRenderer<? super K> myHeaderRenderer;
+        private final ItemRenderer<? super T> myItemRenderer;
+        private final LiveTemplateBuilder<?> myBuilder;
+
+
+        GroupedSeqBinding(Function<? super D, ? extends ObservableList<? extends T>> extractor,
+                          Function<? super T, ? extends ObservableValue<? extends K>> keyExtractor,
+                          ItemRenderer<? super K> headerRenderer,
+                          ItemRenderer<? super T> itemRenderer,
+                          LiveTemplateBuilder<?> builder) {
+            this.myExtractor = extractor;
+            this.myKeyExtractor = keyExtractor;
+            this.myHeaderRenderer = headerRenderer;
+            this.myItemRenderer = itemRenderer;
+            this.myBuilder = builder;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.GROUPED_SEQUENCE;
+        }
+
+
+        /** Extracts the list of items from the given context. */
+        ObservableList<? extends T> extract(D context) {
+            return myExtractor.apply(context);
+        }
+
+
+        Function<? super T, ? extends ObservableValue<? extends K>> getKeyExtractor() {
+            return myKeyExtractor;
+        }
+
+
+        Val<String> renderHeader(K key) {
+            return myHeaderRenderer.apply(myBuilder, Val.constant(key));
+        }
+
+
+        Val<String> renderItem(T item) {
+            return myItemRenderer.apply(myBuilder, Val.constant(item));
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            // groups are in the order of their first item
+            Map<K, List<T>> groups = new LinkedHashMap<>();
+            for (T item : extract(context)) {
+                groups.computeIfAbsent(myKeyExtractor.apply(item).getValue(), k -> new ArrayList<>()).add(item);
+            }
+
+            StringBuilder text = new StringBuilder();
+            for (Entry<K, List<T>> group : groups.entrySet()) {
+                String header = myHeaderRenderer.snapshot(myBuilder, group.getKey());
+                String items = snapshotAll(myItemRenderer, myBuilder, group.getValue());
+                if (header == null || items == null) {
+                    return null;
+                }
+                text.append(header).append(items);
+            }
+            return text.toString();
+        }
+    }
+
+
+    /**
+     * An observable value that's the data context of a sub-template. The sub-template
+     * is created once per bound template, and rebound in place when the data context
+     * of the parent changes.
+     *
+     * @param <D> Type of data context
+     * @param <T> Type of the data context of the sub-template
+     */
+    final class TemplateBinding<D, T> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends ObservableValue<? extends T>> myExtractor;
+        private final ItemRenderer<? super T> myRenderer;
+        private final LiveTemplateBuilder<?> myBuilder;
+        // the plan is resolved lazily, so that recursive templates don't loop
+        private TemplatePlan<T> mySubPlan;
+
+
+        TemplateBinding(Function<? super D, ? extends ObservableValue<? extends T>> extractor,
+                        ItemRenderer<? super T> renderer,
+                        LiveTemplateBuilder<?> builder) {
+            this.myExtractor = extractor;
+            this.myRenderer = renderer;
+            this.myBuilder = builder;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.TEMPLATE;
+        }
+
+
+        /** Extracts the data context of the sub-template. */
+        ObservableValue<? extends T> extract(D context) {
+            return myExtractor.apply(context);
+        }
+
+
+        /** Creates a new unbound sub-template. */
+        LiveTemplateImpl<T> newSubtemplate() {
+            return new LiveTemplateImpl<>(getSubPlan());
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            T subContext = extract(context).getValue();
+            return subContext == null ? "" : getSubPlan().snapshot(subContext);
+        }
+
+
+        @SuppressWarnings("unchecked")
+        private TemplatePlan<T> getSubPlan() {
+            if (mySubPlan == null) {
+                mySubPlan = (TemplatePlan<T>) myRenderer.getSubtemplatePlan(myBuilder);
+            }
+            return mySubPlan;
+        }
+    }
+
+
+
+    /**
+     * A binding of an inlined sub-template, which is bound to a data context
+     * extracted from the data context of the parent. See {@link TemplatePlan}.
+     *
+     * @param <D> Type of data context
+     * @param <T> Type of the data context of the inner binding
+     */
+    final class ScopedBinding<D, T> implements BindingExtractor<D> {
+        private final Function<? super D, ? extends T> myScopeExtractor;
+        private final BindingExtractor<T> myInner;
+
+
+        private ScopedBinding(Function<? super D, ? extends T> scopeExtractor, BindingExtractor<T> inner) {
+            this.myScopeExtractor = scopeExtractor;
+            this.myInner = inner;
+        }
+
+
+        @Override
+        public Kind kind() {
+            return Kind.SCOPED;
+        }
+
+
+        @Override
+        public String snapshot(D context) {
+            T inner = myScopeExtractor.apply(context);
+            return inner == null ? "" : myInner.snapshot(inner);
+        }
+
+
+        @SuppressWarnings("unchecked")
+        Function<Object, ?> getScopeExtractor() {
+            return (Function<Object, ?>) myScopeExtractor;
+        }
+
+
+        BindingExtractor<T> getInner() {
+            return myInner;
+        }
+
+
+        @SuppressWarnings("unchecked")
+        static <D> BindingExtractor<D> wrap(Function<? super D, ?> scopeExtractor, BindingExtractor<?> inner) {
+            return new ScopedBinding<>((Function<? super D, Object>) scopeExtractor, (BindingExtractor<Object>) inner);
         }
     }
 
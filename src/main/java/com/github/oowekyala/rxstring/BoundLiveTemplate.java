@@ -1,13 +1,13 @@
 package com.github.oowekyala.rxstring;
 
-import static com.github.oowekyala.rxstring.BindingExtractor.ConstantBinding;
-
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import org.reactfx.EventSource;
 import org.reactfx.Subscription;
@@ -15,15 +15,29 @@ import org.reactfx.value.Val;
 import org.reactfx.value.ValBase;
 import org.reactfx.value.Var;
 
+import com.github.oowekyala.rxstring.BindingExtractor.ConstantBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.GroupedSeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.KeyedSeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.Kind;
+import com.github.oowekyala.rxstring.BindingExtractor.NumberBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.SeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.SortedSeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.TemplateBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.ValueBinding;
 import com.github.oowekyala.rxstring.ReactfxExtensions.RebindSubscription;
+import com.github.oowekyala.rxstring.ReactfxExtensions.SequenceListener;
 import com.github.oowekyala.rxstring.diff_match_patch.Patch;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
 
 
 /**
  * The actual implementation of a live template, bound to a known data context.
- * This only manages to sequences. Other bindings are mapped to a sequence of
- * length 1.
+ * This interprets the {@link TemplatePlan} of the template. Every binding of the
+ * plan is managed as a sequence, non-sequence bindings have at most one element.
  *
  * Basically this class works as follows:
  * * Conceptually, it presents a List[List[Val[String]]]
@@ -53,17 +67,19 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
     // are shifted right once, which affects their innerIdx
     // These are local to each sequence
     private final List<List<ValIdx>> mySequences;
-    // indices of the constant bindings, which don't need to be rebound
-    // those are 1-to-1 with myOuterOffsets
-    private final boolean[] myConstantIndices;
-    /** The bindings that specify this template. Used for rebinding. */
-    private final List<BindingExtractor<D>> myBindings;
-    /** One subscription for each sequence. Rebound when rebinding the template. */
-    private final List<RebindSubscription<ObservableList<Val<String>>>> mySequenceSubscriptions;
-
-    private final StringBuffer myStringBuffer;
+    /** The compiled bindings that specify this template. Used for rebinding. */
+    private final TemplatePlan<D> myPlan;
+    /**
+     * One subscription for each binding, null for constants, which don't
+     * need to be rebound. Rebound when rebinding the template.
+     */
+    private final List<RebindSubscription<Object>> myBindingSubscriptions;
+    /** Data context of each scope of the plan, see {@link TemplatePlan#extractScopes(Object)}. */
+    private Object[] myScopeContexts;
+
+    private final StringBuilder myStringBuffer;
     private final EventSource<?> myInvalidations = new EventSource<>();
-    private final Handlers myReplaceHandlers;
+    private Handlers myReplaceHandlers;
     /** The template that spawned this bound template. */
     private final LiveTemplate<D> myParent;
     /**
@@ -72,31 +88,62 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
      */
     private boolean isPushInvalidations;
     private String myIndent = ">";
+    /** Scratch buffer of the {@link NumberText}s, created with the first one. */
+    private StringBuilder myScratch;
+    /** Texts rendered in advance for the initial bind, see {@link PreparedEdit}. Null after it. */
+    private TemplatePlan.Snapshot myPrefill;
 
 
     BoundLiveTemplate(D dataContext,
                       LiveTemplate<D> parent,
-                      List<BindingExtractor<D>> bindings,
+                      TemplatePlan<D> plan,
                       List<ReplaceHandler> userReplaceHandlers,
                       Var<ReplaceHandler> parentReplaceCallback) {
+        this(dataContext, parent, plan, userReplaceHandlers, parentReplaceCallback, null);
+    }
+
+
+    /**
+     * Binds a template without handlers, to be {@linkplain #attach(List, Var, String, PreparedEdit) attached}
+     * later. The texts rendered in advance by the edit are reused where the values are the same,
+     * so those are only observed, not rendered again.
+     */
+    BoundLiveTemplate(D dataContext,
+                      LiveTemplate<D> parent,
+                      TemplatePlan<D> plan,
+                      PreparedEdit prepared) {
+        this(dataContext, parent, plan, Collections.emptyList(), Var.newSimpleVar(null), prepared.mySnapshot);
+    }
+
+
+    private BoundLiveTemplate(D dataContext,
+                              LiveTemplate<D> parent,
+                              TemplatePlan<D> plan,
+                              List<ReplaceHandler> userReplaceHandlers,
+                              Var<ReplaceHandler> parentReplaceCallback,
+                              TemplatePlan.Snapshot prefill) {
 
         Objects.requireNonNull(dataContext);
 
         this.myParent = parent;
 
         // the size of these is absolutely constant
-        this.myOuterOffsets = new int[bindings.size()];
-        this.myConstantIndices = new boolean[bindings.size()];
-        this.mySequences = new ArrayList<>(Collections.nCopies(bindings.size(), null));
-        this.mySequenceSubscriptions = new ArrayList<>(Collections.nCopies(bindings.size(), null));
-        this.myBindings = bindings;
+        this.myOuterOffsets = new int[plan.size()];
+        this.mySequences = new ArrayList<>(Collections.nCopies(plan.size(), null));
+        this.myBindingSubscriptions = new ArrayList<>(Collections.nCopies(plan.size(), null));
+        this.myPlan = plan;
 
-        this.myStringBuffer = new StringBuffer();
+        // presized from the previous bound instances of the plan
+        this.myStringBuffer = new StringBuilder(Math.max(16, plan.textLengthHint()));
         this.myReplaceHandlers = new Handlers(userReplaceHandlers, parentReplaceCallback);
 
+        this.myPrefill = prefill;
         bindTo(dataContext, false);
+        this.myPrefill = null;
         this.isPushInvalidations = true;
 
+        plan.recordSizes(myStringBuffer.length(), mySequences);
+
         myReplaceHandlers.notifyListenersOfReplace(ReplacementStrategy.replacing(0, 0, myStringBuffer.toString()));
     }
 
@@ -113,14 +160,54 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
     void unbind() {
         // save the length, because unsubscribing will change it
         int myLength = myStringBuffer.length();
-        isPushInvalidations = false; // avoid pushing every intermediary state as a value
-        mySequenceSubscriptions.forEach(Subscription::unsubscribe);
+        unbindSilently();
         // notify everyone that the template was deleted but only once
         myReplaceHandlers.notifyListenersOfReplace(ReplacementStrategy.replacing(0, myLength, ""));
 
     }
 
 
+    /**
+     * Unbinds this template without notifying the handlers. Used when
+     * another bound template takes over, see {@link #attach(List, Var, String, PreparedEdit)}.
+     */
+    void unbindSilently() {
+        isPushInvalidations = false; // avoid pushing every intermediary state as a value
+        for (RebindSubscription<Object> sub : myBindingSubscriptions) {
+            if (sub != null) {
+                sub.unsubscribe();
+            }
+        }
+    }
+
+
+    /**
+     * Connects this template to the given handlers. This is used on templates that were
+     * bound detached, i.e. without handlers, e.g. on a background thread. The handlers
+     * are notified of the difference between the previous text they saw and the text
+     * of this template, in a single pass.
+     *
+     * @param userReplaceHandlers   User handlers of the parent template
+     * @param parentReplaceCallback Internal handler of the parent template
+     * @param previousText          Text that was presented by the handlers until now
+     * @param preparedEdit          Edit computed in advance, used if it's still between the same texts, nullable
+     */
+    void attach(List<ReplaceHandler> userReplaceHandlers,
+                Var<ReplaceHandler> parentReplaceCallback,
+                String previousText,
+                PreparedEdit preparedEdit) {
+
+        this.myReplaceHandlers = new Handlers(userReplaceHandlers, parentReplaceCallback);
+
+        String text = myStringBuffer.toString();
+        ReplacementStrategy strategy = preparedEdit != null && preparedEdit.isBetween(previousText, text)
+                                       ? preparedEdit.myStrategy
+                                       : getReplacementStrategy(0, previousText, text);
+
+        myReplaceHandlers.notifyListenersOfReplace(strategy);
+    }
+
+
     /**
      * Rebinds this bound template to a new data context.
      *
@@ -132,12 +219,51 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
 
 
     private void bindTo(D dataContext, boolean isRebind) {
+        Object[] scopeContexts = myPlan.extractScopes(dataContext);
+
         for (int i = 0; i < myOuterOffsets.length; i++) {
-            // only reevaluate the thing if it's not constant
-            if (!myConstantIndices[i]) {
-                mySequenceSubscriptions.set(i, initSequence(dataContext, myBindings.get(i), i, isRebind));
+            int scope = myPlan.scopeOf(i);
+            Object context = scopeContexts[scope];
+
+            if (!isRebind) {
+                myOuterOffsets[i] = myStringBuffer.length();
+                mySequences.set(i, new ArrayList<>(0));
+                if (context != null) {
+                    myBindingSubscriptions.set(i, initBinding(context, myPlan.get(i), i));
+                }
+            } else if (context == myScopeContexts[scope]) {
+                // the bindings of this scope are already bound to this context
+                continue;
+            } else if (context == null) {
+                // the inlined sub-template is unbound
+                clearBinding(i);
+            } else if (myScopeContexts[scope] == null) {
+                myBindingSubscriptions.set(i, initBinding(context, myPlan.get(i), i));
+            } else if (myBindingSubscriptions.get(i) != null) {
+                // only reevaluate the thing if it's not constant
+                myBindingSubscriptions.set(i, myBindingSubscriptions.get(i).rebind(context));
             }
         }
+
+        myScopeContexts = scopeContexts;
+    }
+
+
+    /** Unsubscribes the binding at the given index and deletes its text. */
+    private void clearBinding(int outerIdx) {
+        RebindSubscription<Object> sub = myBindingSubscriptions.set(outerIdx, null);
+        if (sub != null) {
+            sub.unsubscribe();
+        }
+
+        BindingExtractor<Object> binding = myPlan.get(outerIdx);
+        if (binding.kind() == Kind.CONSTANT) {
+            replaceConstant(outerIdx, ((ConstantBinding<?>) binding).constant.length(), "");
+            return;
+        }
+
+        List<ValIdx> seq = mySequences.get(outerIdx);
+        ValIdx.deleteRange(seq, 0, seq.size());
     }
 
 
@@ -154,21 +280,45 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
     // for construction
 
 
-    // test only
+    // test only, constants are counted as one element
     long totalSubscriptions() {
-        return mySequences.stream().mapToLong(List::size).sum();
+        long total = 0;
+        for (int i = 0; i < mySequences.size(); i++) {
+            BindingExtractor<Object> binding = myPlan.get(i);
+            if (binding.kind() == Kind.CONSTANT) {
+                boolean isBound = myScopeContexts[myPlan.scopeOf(i)] != null;
+                total += isBound && !((ConstantBinding<?>) binding).constant.isEmpty() ? 1 : 0;
+            } else {
+                total += mySequences.get(i).size();
+            }
+        }
+        return total;
     }
 
 
     private ReplacementStrategy getReplacementStrategy(int start, int end, String value) {
-        String prevSlice = myStringBuffer.substring(start, end);
+        return getReplacementStrategy(start, myStringBuffer.substring(start, end), value);
+    }
+
+
+    /**
+     * Gets a strategy to replace the given previous slice, which starts at the given offset,
+     * with a new value.
+     */
+    private ReplacementStrategy getReplacementStrategy(int start, String prevSlice, String value) {
+        return getReplacementStrategy(start, prevSlice, value, myParent.isUseDiffMatchPatchStrategy());
+    }
+
+
+    private static ReplacementStrategy getReplacementStrategy(int start, String prevSlice, String value, boolean useDiffMatchPatch) {
+        int end = start + prevSlice.length();
         if (prevSlice.equals(value)) {
             return (base, canFail) -> {
                 // nothing to replace
             };
         }
 
-        if (myParent.isUseDiffMatchPatchStrategy()) {
+        if (useDiffMatchPatch) {
             DiffMatchPatchWithHooks dmp = new DiffMatchPatchWithHooks();
 
             // the unfailing() call must be placed after withOffset
@@ -211,30 +361,259 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
 
 
     /**
-     * Initialises the whole sequence at index outerIdx. Returns the subscription that unsubscribes
-     * all elements of the sequence.
+     * Initialises the binding at index outerIdx. Returns the subscription that unbinds it,
+     * or null if the binding is constant.
      */
-    private RebindSubscription<ObservableList<Val<String>>> initSequence(D context, BindingExtractor<D> bindingExtractor, int outerIdx, boolean isRebind) {
+    private RebindSubscription<Object> initBinding(Object context, BindingExtractor<Object> binding, int outerIdx) {
+        switch (binding.kind()) {
+        case CONSTANT:
+            initConstant((ConstantBinding<?>) binding, outerIdx);
+            return null;
+        case VALUE:
+            return initValue((ValueBinding<Object, ?>) binding, context, outerIdx);
+        case NUMBER:
+            return initNumber((NumberBinding<Object>) binding, context, outerIdx);
+        case SEQUENCE:
+            return initSequence((SeqBinding<Object, ?>) binding, context, outerIdx);
+        case KEYED_SEQUENCE:
+            return initKeyedSequence((KeyedSeqBinding<Object, ?>) binding, context, outerIdx);
+        case SORTED_SEQUENCE:
+            return initSortedSequence((SortedSeqBinding<Object, ?, ?>) binding, context, outerIdx);
+        case GROUPED_SEQUENCE:
+            return initGroupedSequence((GroupedSeqBinding<Object, ?, ?>) binding, context, outerIdx);
+        case TEMPLATE:
+            return initTemplate((TemplateBinding<Object, ?>) binding, context, outerIdx);
+        default:
+            throw new IllegalStateException("Unknown binding kind " + binding.kind());
+        }
+    }
 
-        if (!myConstantIndices[outerIdx] && bindingExtractor instanceof ConstantBinding) {
-            // then we're initialising for the first time
-            myConstantIndices[outerIdx] = true;
+
+    /**
+     * Constants have no elements, their text is the whole range of their binding.
+     * They all share the same empty sequence.
+     */
+    private void initConstant(ConstantBinding<?> binding, int outerIdx) {
+        mySequences.set(outerIdx, Collections.emptyList());
+        replaceConstant(outerIdx, 0, binding.constant);
+    }
+
+
+    /** Replaces the text of the constant at the given index, and shifts the following bindings. */
+    private void replaceConstant(int outerIdx, int oldLength, String text) {
+        int start = myOuterOffsets[outerIdx];
+        handleContentChange(start, start + oldLength, text);
+        int shift = text.length() - oldLength;
+        for (int j = outerIdx + 1; j < myOuterOffsets.length; j++) {
+            myOuterOffsets[j] += shift;
         }
+    }
+
 
-        // whether rebind or not we have to extract the list from the up-to-date data context
-        ObservableList<Val<String>> lst = bindingExtractor.extract(context).filtered(v -> !isIgnorable(v));
-
-        if (!isRebind) {
-            // if it's a rebind then those have already been initialized
-            myOuterOffsets[outerIdx] = myStringBuffer.length();
-            mySequences.set(outerIdx, new ArrayList<>(lst.size()));
-        } else if (mySequenceSubscriptions.get(outerIdx) != null) {
-            // then we're rebinding, and so we'll rebase the new list onto the current one
-            // to merge existing templates
-            return mySequenceSubscriptions.get(outerIdx).rebind(lst);
+    private RebindSubscription<Object> initValue(ValueBinding<Object, ?> binding, Object context, int outerIdx) {
+        mySequences.set(outerIdx, new ArrayList<>(1));
+        ValIdx valIdx = insertBindingAt(outerIdx, 0);
+        if (myPrefill != null && myPrefill.isReusable(outerIdx, context)) {
+            valIdx.appendDirectly(out -> out.append(myPrefill.textOf(outerIdx)));
+            return new DeferredValue(binding, context, valIdx, myPrefill.valueOf(outerIdx));
         }
+        Val<String> val = binding.render(context);
+        if (val instanceof EscapedVal && !isPushInvalidations) {
+            // initial bind, the range is at the end of the buffer
+            return valueRebindSub(binding, BindingExtractor.appendEscapedVal(myParent, (EscapedVal) val, valIdx));
+        }
+        return valueRebindSub(binding, BindingExtractor.bindSingleVal(myParent, val, valIdx));
+    }
+
 
-        return ReactfxExtensions.dynamicRecombine(lst, (elt, innerIdx) -> initVal(elt, outerIdx, innerIdx));
+    private RebindSubscription<Object> valueRebindSub(ValueBinding<Object, ?> binding, RebindSubscription<Val<String>> valSub) {
+        return RebindSubscription.make(valSub, newCtx -> valueRebindSub(binding, valSub.rebind(binding.render(newCtx))));
+    }
+
+
+    /**
+     * A value binding whose text was rendered in advance from the value of its observable,
+     * see {@link TemplatePlan#snapshotBindings(Object)}. Until the observable is invalidated,
+     * only it is observed, and nothing is rendered. Then the value is bound like any other.
+     */
+    private final class DeferredValue implements RebindSubscription<Object>, InvalidationListener {
+
+        private final ValueBinding<Object, ?> myBinding;
+        private final Object myContext;
+        private final ValIdx myIdx;
+        private final ObservableValue<?> myObservable;
+        /** The subscription of the bound value, null until the observable is invalidated. */
+        private RebindSubscription<Object> myBound;
+
+
+        DeferredValue(ValueBinding<Object, ?> binding, Object context, ValIdx idx, Object renderedValue) {
+            this.myBinding = binding;
+            this.myContext = context;
+            this.myIdx = idx;
+            this.myObservable = binding.extract(context);
+
+            myObservable.addListener(this);
+            // the value is read once observed, so that its next invalidation is reported
+            if (myObservable.getValue() != renderedValue) {
+                invalidated(myObservable);
+            }
+        }
+
+
+        @Override
+        public void invalidated(Observable observable) {
+            myObservable.removeListener(this);
+            myBound = valueRebindSub(myBinding, BindingExtractor.bindSingleVal(myParent, myBinding.render(myContext), myIdx));
+        }
+
+
+        @Override
+        public RebindSubscription<Object> rebind(Object newCtx) {
+            if (myBound != null) {
+                return myBound.rebind(newCtx);
+            }
+            myObservable.removeListener(this);
+            return valueRebindSub(myBinding, BindingExtractor.bindSingleVal(myParent, myBinding.render(newCtx), myIdx));
+        }
+
+
+        @Override
+        public void unsubscribe() {
+            if (myBound != null) {
+                myBound.unsubscribe();
+            } else {
+                myObservable.removeListener(this);
+            }
+        }
+    }
+
+
+    private RebindSubscription<Object> initNumber(NumberBinding<Object> binding, Object context, int outerIdx) {
+        mySequences.set(outerIdx, new ArrayList<>(1));
+        if (myScratch == null) {
+            myScratch = new StringBuilder(24);
+        }
+        ValIdx valIdx = insertBindingAt(outerIdx, 0);
+        NumberText text = new NumberText(binding.getFormat(), valIdx, myScratch);
+        if (myPrefill != null && myPrefill.isReusable(outerIdx, context)) {
+            valIdx.appendDirectly(out -> out.append(myPrefill.textOf(outerIdx)));
+            text.bindTo(binding.extract(context), (Long) myPrefill.valueOf(outerIdx));
+        } else {
+            text.bindTo(binding.extract(context));
+        }
+        return rebindInPlace(text, newCtx -> text.bindTo(binding.extract(newCtx)));
+    }
+
+
+    /**
+     * Initialises the whole sequence at index outerIdx. Returns the subscription that unsubscribes
+     * all elements of the sequence.
+     */
+    private RebindSubscription<Object> initSequence(SeqBinding<Object, ?> binding, Object context, int outerIdx) {
+        ObservableList<Val<String>> lst = extractSequence(binding, context);
+        mySequences.set(outerIdx, new ArrayList<>(Math.max(lst.size(), myPlan.sequenceSizeHint(outerIdx))));
+
+        SequenceListener<Val<String>> listener = sequenceListener(outerIdx);
+        return sequenceRebindSub(binding, ReactfxExtensions.dynamicRecombine(lst, (elt, innerIdx) -> initVal(elt, outerIdx, innerIdx), listener));
+    }
+
+
+    private RebindSubscription<Object> sequenceRebindSub(SeqBinding<Object, ?> binding, RebindSubscription<ObservableList<Val<String>>> seqSub) {
+        // when rebinding, we rebase the new list onto the current one to merge existing templates
+        return RebindSubscription.make(seqSub, newCtx -> sequenceRebindSub(binding, seqSub.rebind(extractSequence(binding, newCtx))));
+    }
+
+
+    /**
+     * Extracts the elements of a sequence. Constant elements with an empty text are
+     * filtered out, if the renderer can produce any.
+     */
+    private ObservableList<Val<String>> extractSequence(SeqBinding<Object, ?> binding, Object context) {
+        ObservableList<Val<String>> elements = binding.extract(context);
+        return binding.needsFiltering() ? elements.filtered(v -> !isIgnorable(v)) : elements;
+    }
+
+
+    /**
+     * Initialises a keyed sequence. When rebinding, the elements are reconciled with
+     * the items of the new list by key, like when the list changes.
+     */
+    private <T> RebindSubscription<Object> initKeyedSequence(KeyedSeqBinding<Object, T> binding, Object context, int outerIdx) {
+        return initItemSequence(binding::extract, context, outerIdx, (idxFactory, binder, listener) ->
+            new KeyedSequence<>(binding.getKeyFunction(), binding::render, idxFactory, binder, listener));
+    }
+
+
+    /**
+     * Initialises a sorted sequence. When rebinding, the elements are replaced
+     * by those of the new list.
+     */
+    private <T, K> RebindSubscription<Object> initSortedSequence(SortedSeqBinding<Object, T, K> binding, Object context, int outerIdx) {
+        return initItemSequence(binding::extract, context, outerIdx, (idxFactory, binder, listener) ->
+            new SortedSequence<>(binding.getKeyExtractor(), binding.getComparator(), binding::render, idxFactory, binder, listener));
+    }
+
+
+    /**
+     * Initialises a grouped sequence. When rebinding, the elements are replaced
+     * by those of the new list.
+     */
+    private <T, K> RebindSubscription<Object> initGroupedSequence(GroupedSeqBinding<Object, T, K> binding, Object context, int outerIdx) {
+        return initItemSequence(binding::extract, context, outerIdx, (idxFactory, binder, listener) ->
+            new GroupedSequence<>(binding.getKeyExtractor(), binding::renderHeader, binding::renderItem, idxFactory, binder, listener));
+    }
+
+
+    /**
+     * Initialises a sequence that manages its own elements at index outerIdx.
+     * The sequence is kept when rebinding, only its source list is replaced.
+     */
+    private <T> RebindSubscription<Object> initItemSequence(Function<Object, ObservableList<? extends T>> extractor,
+                                                            Object context,
+                                                            int outerIdx,
+                                                            ItemSequence.Factory<T> factory) {
+        ObservableList<? extends T> lst = extractor.apply(context);
+        mySequences.set(outerIdx, new ArrayList<>(Math.max(lst.size(), myPlan.sequenceSizeHint(outerIdx))));
+
+        ItemSequence<T> seq = factory.create((from, vals) -> insertBindingsAt(outerIdx, from, vals),
+                                             (val, valIdx) -> BindingExtractor.subscribeSingleVal(myParent, val, valIdx),
+                                             sequenceListener(outerIdx));
+        seq.bindTo(lst);
+        return rebindInPlace(seq, newCtx -> seq.bindTo(extractor.apply(newCtx)));
+    }
+
+
+    /**
+     * Initialises a sub-template. The sub-template is kept when rebinding this
+     * template, only its data context is rebound.
+     */
+    private <T> RebindSubscription<Object> initTemplate(TemplateBinding<Object, T> binding, Object context, int outerIdx) {
+        mySequences.set(outerIdx, new ArrayList<>(1));
+        ValIdx valIdx = insertBindingAt(outerIdx, 0);
+
+        LiveTemplateImpl<T> subTemplate = binding.newSubtemplate();
+        subTemplate.importConfigFrom(myParent);
+        subTemplate.dataContextProperty().bind(binding.extract(context));
+        valIdx.replaceValue(subTemplate.getValue());
+
+        Subscription removeHandler = subTemplate.addInternalReplaceHandler(valIdx::replaceRelative);
+        return rebindInPlace(removeHandler.and(subTemplate::release), newCtx -> {
+            subTemplate.importConfigFrom(myParent);
+            subTemplate.dataContextProperty().unbind();
+            subTemplate.dataContextProperty().bind(binding.extract(newCtx));
+        });
+    }
+
+
+    /**
+     * Returns a subscription for a binding whose state is kept when rebinding,
+     * and only updated by the given action with the new data context.
+     */
+    private static RebindSubscription<Object> rebindInPlace(Subscription unbinder, Consumer<Object> rebinder) {
+        return RebindSubscription.make(unbinder, newCtx -> {
+            rebinder.accept(newCtx);
+            return rebindInPlace(unbinder, rebinder);
+        });
     }
 
 
@@ -247,19 +626,68 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
         // this thing is captured which allows its indices to remain up to date
         ValIdx valIdx = insertBindingAt(outerIdx, innerIdx);
 
-        return BindingExtractor.bindSingleVal(myParent, stringSource, valIdx).and(() -> deleteBindingAt(valIdx));
+        // the text is deleted by the sequence listener, in bulk
+        return BindingExtractor.bindSingleVal(myParent, stringSource, valIdx);
     }
 
 
     private ValIdx insertBindingAt(int outerIdx, int innerIdx) {
-        return new ValIdx(myOuterOffsets, myStringBuffer, outerIdx, innerIdx, mySequences.get(outerIdx), this::handleContentChange);
+        return new ValIdx(myOuterOffsets, myStringBuffer, outerIdx, innerIdx, mySequences.get(outerIdx), delimiterOf(outerIdx), this::handleContentChange);
     }
 
 
-    private void deleteBindingAt(ValIdx idx) {
-        if (isPushInvalidations) {
-            idx.delete();
+    /** Delimiter written between the elements of the sequence at the given index. */
+    private String delimiterOf(int outerIdx) {
+        BindingExtractor<Object> binding = myPlan.get(outerIdx);
+        return binding.kind() == Kind.SEQUENCE ? ((SeqBinding<Object, ?>) binding).getDelimiter() : "";
+    }
+
+
+    /**
+     * Inserts the bindings of a block of Vals in a sequence, with their current text,
+     * in a single replacement. The Vals still need to be {@linkplain BindingExtractor#subscribeSingleVal subscribed to}.
+     */
+    private List<ValIdx> insertBindingsAt(int outerIdx, int from, List<? extends Val<String>> vals) {
+        String[] texts = new String[vals.size()];
+        for (int i = 0; i < texts.length; i++) {
+            texts[i] = vals.get(i).getValue();
         }
+        return ValIdx.insertRange(myOuterOffsets, myStringBuffer, outerIdx, mySequences.get(outerIdx), from, texts, delimiterOf(outerIdx), this::handleContentChange);
+    }
+
+
+    /**
+     * Returns a listener that updates the text of the sequence at the given index in bulk.
+     * Removed elements are not deleted while the template is being unbound.
+     */
+    private SequenceListener<Val<String>> sequenceListener(int outerIdx) {
+        return new SequenceListener<Val<String>>() {
+            @Override
+            public List<RebindSubscription<Val<String>>> added(int from, List<? extends Val<String>> addedView) {
+                // mapped lists apply the renderer again on each access
+                List<? extends Val<String>> added = new ArrayList<>(addedView);
+                List<ValIdx> indices = insertBindingsAt(outerIdx, from, added);
+                List<RebindSubscription<Val<String>>> subs = new ArrayList<>(added.size());
+                for (int i = 0; i < indices.size(); i++) {
+                    subs.add(BindingExtractor.subscribeSingleVal(myParent, added.get(i), indices.get(i)));
+                }
+                return subs;
+            }
+
+
+            @Override
+            public void permuted(Change<?> ch) {
+                ValIdx.permute(mySequences.get(outerIdx), ch.getFrom(), ch.getTo(), ch::getPermutation);
+            }
+
+
+            @Override
+            public void removed(int from, int to) {
+                if (isPushInvalidations) {
+                    ValIdx.deleteRange(mySequences.get(outerIdx), from, to);
+                }
+            }
+        };
     }
 
 
@@ -282,6 +710,47 @@ final class BoundLiveTemplate<D> extends ValBase<String> {
         }
     }
 
+    /**
+     * The text of a template bound to another context, and the edit from its current text. It's
+     * rendered in advance, off the thread that owns the template, see
+     * {@link LiveTemplateImpl#prepareDataContext(Object, java.util.concurrent.Executor, java.util.concurrent.Executor)}.
+     * The texts of the bindings are reused when the template is bound to the context.
+     */
+    static final class PreparedEdit {
+
+        private final String myPreviousText;
+        private final TemplatePlan.Snapshot mySnapshot;
+        /** Null if some bindings could not be rendered in advance. */
+        private final ReplacementStrategy myStrategy;
+
+
+        private PreparedEdit(String previousText, TemplatePlan.Snapshot snapshot, ReplacementStrategy strategy) {
+            this.myPreviousText = previousText;
+            this.mySnapshot = snapshot;
+            this.myStrategy = strategy;
+        }
+
+
+        /** Whether this edit turns the given previous text into the given text. */
+        boolean isBetween(String previousText, String text) {
+            return myStrategy != null && myPreviousText.equals(previousText) && mySnapshot.getText().equals(text);
+        }
+
+
+        /**
+         * Renders the text of the plan for the given context, and computes the edit from the
+         * previous text. This observes nothing and touches no template, so it's safe on any thread.
+         */
+        static <D> PreparedEdit render(TemplatePlan<D> plan, D context, String previousText, boolean useDiffMatchPatch) {
+            TemplatePlan.Snapshot snapshot = plan.snapshotBindings(context);
+            String text = snapshot.getText();
+            return new PreparedEdit(previousText,
+                                    snapshot,
+                                    text == null ? null : getReplacementStrategy(0, previousText, text, useDiffMatchPatch));
+        }
+    }
+
+
     private static class Handlers {
 
         private final List<ReplaceHandler> myUserHandlers;
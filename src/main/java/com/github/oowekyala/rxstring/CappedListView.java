@@ -0,0 +1,117 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.reactfx.Subscription;
+import org.reactfx.collection.ListChangeAccumulator;
+import org.reactfx.collection.LiveList;
+import org.reactfx.collection.LiveListBase;
+import org.reactfx.collection.QuasiListChange;
+import org.reactfx.collection.QuasiListModification;
+import org.reactfx.collection.UnmodifiableByDefaultLiveList;
+
+import javafx.collections.ObservableList;
+
+
+/**
+ * A list view on the first elements of a source list, up to a maximum size. Changes
+ * of the source that only affect elements past the limit are not reported. When
+ * elements are inserted or removed before the limit, the insertion or removal is
+ * reported as is, and elements are promoted or demoted at the boundary in a separate
+ * modification.
+ *
+ * <p>While it's observed, this view keeps a copy of its elements, so that it can
+ * report removed elements that were pushed past the limit.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class CappedListView<E> extends LiveListBase<E> implements UnmodifiableByDefaultLiveList<E> {
+
+    private final ObservableList<? extends E> source;
+    private final int maxSize;
+    /** Copy of the visible elements, maintained while this list is observed. */
+    private final List<E> myVisible = new ArrayList<>();
+
+
+    CappedListView(ObservableList<? extends E> source, int maxSize) {
+        this.source = source;
+        this.maxSize = maxSize;
+    }
+
+
+    @Override
+    protected Subscription observeInputs() {
+        myVisible.clear();
+        myVisible.addAll(source.subList(0, size()));
+        return LiveList.<E>observeQuasiChanges(source, this::sourceChanged);
+    }
+
+
+    private void sourceChanged(QuasiListChange<? extends E> change) {
+        ListChangeAccumulator<E> acc = new ListChangeAccumulator<>();
+
+        // modifications are sorted, and relative to the list after the previous ones
+        for (QuasiListModification<? extends E> mod : change.getModifications()) {
+            int from = mod.getFrom();
+            if (from >= maxSize) {
+                // neither this one nor the next ones are visible
+                break;
+            }
+
+            // elements may have been pulled before the limit by the previous modifications
+            promote(acc, from);
+
+            int removedEnd = Math.min(from + mod.getRemovedSize(), myVisible.size());
+            int addedSize = Math.min(mod.getAddedSize(), maxSize - from);
+            List<E> range = myVisible.subList(from, removedEnd);
+            List<E> removed = range.isEmpty() ? Collections.emptyList() : new ArrayList<>(range);
+            range.clear();
+            // the next modifications don't touch these
+            range.addAll(source.subList(from, from + addedSize));
+            if (!removed.isEmpty() || addedSize > 0) {
+                acc.add(QuasiListModification.create(from, removed, addedSize));
+            }
+
+            if (myVisible.size() > maxSize) {
+                // demote the elements pushed past the limit
+                List<E> demoted = myVisible.subList(maxSize, myVisible.size());
+                acc.add(QuasiListModification.create(maxSize, new ArrayList<>(demoted), 0));
+                demoted.clear();
+            }
+        }
+
+        promote(acc, size());
+
+        if (!acc.isEmpty()) {
+            notifyObservers(acc.fetch());
+        }
+    }
+
+
+    /** Promotes the elements of the source up to the given index, if they're not visible yet. */
+    private void promote(ListChangeAccumulator<E> acc, int end) {
+        int start = myVisible.size();
+        if (start < end) {
+            myVisible.addAll(source.subList(start, end));
+            acc.add(QuasiListModification.create(start, Collections.emptyList(), end - start));
+        }
+    }
+
+
+    @Override
+    public int size() {
+        return Math.min(source.size(), maxSize);
+    }
+
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException();
+        }
+        return source.get(index);
+    }
+}
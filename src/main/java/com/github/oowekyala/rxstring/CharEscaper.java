@@ -0,0 +1,88 @@
+package com.github.oowekyala.rxstring;
+
+/**
+ * An {@link Escaper} that replaces some ASCII characters with a fixed string,
+ * looked up in a table. Runs of characters that are kept are appended at once.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class CharEscaper implements Escaper {
+
+    static final CharEscaper HTML = new CharEscaper(new String[128])
+        .replacing('&', "&amp;")
+        .replacing('<', "&lt;")
+        .replacing('>', "&gt;")
+        .replacing('"', "&quot;")
+        .replacing('\'', "&#39;");
+
+    static final CharEscaper XML = new CharEscaper(new String[128])
+        .replacing('&', "&amp;")
+        .replacing('<', "&lt;")
+        .replacing('>', "&gt;")
+        .replacing('"', "&quot;")
+        .replacing('\'', "&apos;");
+
+    static final CharEscaper JSON;
+
+
+    static {
+        CharEscaper json = new CharEscaper(new String[128]);
+        for (char c = 0; c < 0x20; c++) {
+            json.replacing(c, String.format("\\u%04x", (int) c));
+        }
+        JSON = json.replacing('"', "\\\"")
+                   .replacing('\\', "\\\\")
+                   .replacing('\b', "\\b")
+                   .replacing('\f', "\\f")
+                   .replacing('\n', "\\n")
+                   .replacing('\r', "\\r")
+                   .replacing('\t', "\\t");
+    }
+
+
+    /** Replacement of each ASCII character, null if it's kept. */
+    private final String[] myReplacements;
+
+
+    private CharEscaper(String[] replacements) {
+        this.myReplacements = replacements;
+    }
+
+
+    /** Only used to build the constants. */
+    private CharEscaper replacing(char c, String replacement) {
+        myReplacements[c] = replacement;
+        return this;
+    }
+
+
+    private String replacementOf(char c) {
+        return c < myReplacements.length ? myReplacements[c] : null;
+    }
+
+
+    @Override
+    public int indexOfEscaped(CharSequence input, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (replacementOf(input.charAt(i)) != null) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    @Override
+    public void escapeTo(CharSequence input, int start, int end, StringBuilder out) {
+        int runStart = start;
+        for (int i = start; i < end; i++) {
+            String replacement = replacementOf(input.charAt(i));
+            if (replacement != null) {
+                out.append(input, runStart, i).append(replacement);
+                runStart = i + 1;
+            }
+        }
+        out.append(input, runStart, end);
+    }
+}
@@ -1,6 +1,6 @@
 package com.github.oowekyala.rxstring;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
 import java.util.Collections;
 import java.util.List;
 
@@ -18,6 +18,12 @@ import javafx.collections.ObservableList;
  * A list view that pretends its elements are separated by delimiters, and that the
  * first and last are a special prefix and suffix.
  *
+ * <p>Templates don't use this: sequence bindings write the delimiters of a
+ * {@linkplain SeqRenderer#delimited(String, String, String, ItemRenderer) delimited renderer}
+ * as plain text. This only backs the list returned by {@link SeqRenderer#apply(LiveTemplateBuilder, ObservableList)}
+ * and {@link ReactfxExtensions#asDelimited(ObservableList, Object, Object, Object)}, for
+ * callers that use them directly.
+ *
  * @author Clément Fournier
  * @since 1.0
  */
@@ -46,113 +52,133 @@ class DelimitedListView<E> extends LiveListBase<E> implements UnmodifiableByDefa
     }
 
 
-    private QuasiListChange<E> mappedChangeView(
-        QuasiListChange<? extends E> change) {
-        return () -> {
-            List<? extends QuasiListModification<? extends E>> mods = change.getModifications();
-            return ReactfxExtensions.lazyMappedView(mods, mod -> new QuasiListModification<E>() {
+    private QuasiListChange<E> mappedChangeView(QuasiListChange<? extends E> change) {
+        List<? extends QuasiListModification<? extends E>> mods = change.getModifications();
+        // the modifications are wrapped when accessed, they're usually accessed once
+        List<QuasiListModification<E>> mapped = new AbstractList<QuasiListModification<E>>() {
+            @Override
+            public QuasiListModification<E> get(int index) {
+                return new DelimitedModification(mods.get(index));
+            }
 
-                private List<E> myRemoved;
-                private int myTo = UNINITIALIZED;
 
+            @Override
+            public int size() {
+                return mods.size();
+            }
+        };
+        return () -> mapped;
+    }
 
-                @Override
-                public int getFrom() {
-                    int from = mod.getFrom();
-                    if (from == 0) {
-                        // we started from the first element, there's no delimiter before it
-                        return 1;
-                    } else {
-                        // consider the change to originate from the delimiter preceding it
-                        return sourceIdxToThisIdx(from) - 1;
-                    }
-                }
 
+    /** Translates a modification of the source list with index arithmetic. */
+    private final class DelimitedModification implements QuasiListModification<E> {
 
-                @Override
-                public int getTo() {
-                    if (myTo != UNINITIALIZED) {
-                        return myTo;
-                    }
+        private final QuasiListModification<? extends E> mod;
+        private int myTo = UNINITIALIZED;
 
-                    int removedSize = getRemovedSize();
-                    int addedSize = getAddedSize();
-                    int from = getFrom();
-                    if (removedSize > 0 && addedSize == 0) {
-                        // removal
-                        myTo = from;
-                        return myTo;
-                    }
-                    int sourceSize = source.size();
-
-                    if (removedSize == 0) {
-                        boolean isAddingToEmptyList = addedSize > 0 && sourceSize == mod.getAddedSize();
-                        if (from == 1 && !isAddingToEmptyList) {
-                            // there is a delimiter after in this case
-                            // [a,b] -> [c,a,b] : c,     (0,1) => (1,3)
-                            // [a]   -> [c,b,a] : c,b,   (0,2) => (1,5)
-                            // [a,b]   -> [c,b] : c,b,   (0,2) => (1,5)
-                            myTo = sourceIdxToThisIdx(mod.getTo());
-                            return myTo;
-                        }
-                    }
-                    // no delimiter after
-                    // []    -> [c]     : c      (0,1) => (1,2)
-                    // []    -> [a,b]   : a,b    (0,2) => (1,4)
-                    // [a,b] -> [a,b,c] : ,c     (2,3) => (4,6)
-                    myTo = sourceIdxToThisIdx(mod.getTo()) - 1;
+
+        DelimitedModification(QuasiListModification<? extends E> mod) {
+            this.mod = mod;
+        }
+
+
+        @Override
+        public int getFrom() {
+            int from = mod.getFrom();
+            if (from == 0) {
+                // we started from the first element, there's no delimiter before it
+                return 1;
+            } else {
+                // consider the change to originate from the delimiter preceding it
+                return sourceIdxToThisIdx(from) - 1;
+            }
+        }
+
+
+        @Override
+        public int getTo() {
+            if (myTo != UNINITIALIZED) {
+                return myTo;
+            }
+
+            int removedSize = getRemovedSize();
+            int addedSize = mod.getAddedSize();
+            int from = getFrom();
+            if (removedSize > 0 && addedSize == 0) {
+                // removal
+                myTo = from;
+                return myTo;
+            }
+            int sourceSize = source.size();
+
+            if (removedSize == 0) {
+                boolean isAddingToEmptyList = addedSize > 0 && sourceSize == addedSize;
+                if (from == 1 && !isAddingToEmptyList) {
+                    // there is a delimiter after in this case
+                    // [a,b] -> [c,a,b] : c,     (0,1) => (1,3)
+                    // [a]   -> [c,b,a] : c,b,   (0,2) => (1,5)
+                    // [a,b]   -> [c,b] : c,b,   (0,2) => (1,5)
+                    myTo = sourceIdxToThisIdx(mod.getTo());
                     return myTo;
                 }
+            }
+            // no delimiter after
+            // []    -> [c]     : c      (0,1) => (1,2)
+            // []    -> [a,b]   : a,b    (0,2) => (1,4)
+            // [a,b] -> [a,b,c] : ,c     (2,3) => (4,6)
+            myTo = sourceIdxToThisIdx(mod.getTo()) - 1;
+            return myTo;
+        }
+
+
+        @Override
+        public int getAddedSize() {
+            // the added elements count in the delimiters that come with them
+            // [a] -> [a,b]   : ,b
+            // [a] -> [b,a]   : b,
+            // []  -> [a,b]   : a,b
+            return mod.getAddedSize() == 0 ? 0 : getTo() - getFrom();
+        }
 
 
+        @Override
+        public List<? extends E> getRemoved() {
+            List<? extends E> removed = mod.getRemoved();
+            return removed.isEmpty() ? Collections.emptyList() : removedView(removed);
+        }
+
+
+        /**
+         * The removed elements, each preceded by a delimiter: [,a,b]. If the removal
+         * starts at the first element, there's no delimiter before it, but the one
+         * after it is removed if elements remain: [a,b,] -> [c].
+         */
+        private List<E> removedView(List<? extends E> removed) {
+            int count = removed.size();
+            boolean leading = mod.getFrom() != 0;
+            // [a,b] -> [b], but not [a] -> [] or [a,b] -> [c,b]
+            boolean trailing = !leading && mod.getAddedSize() == 0 && !source.isEmpty();
+            int size = 2 * count - (leading ? 0 : 1) + (trailing ? 1 : 0);
+
+            return new AbstractList<E>() {
                 @Override
-                public int getAddedSize() {
-                    // 0 -> 0
-                    // 1 -> 1
-                    // 2 -> 3
-                    int added = mod.getAddedSize();
-                    if (added == 0) {
-                        return 0;
-                    } else if (added == 1 && source.size() == 1) {
-                        // [] -> [a]
-                        return 1;
-                    } else {
-                        // count the delimiter in
-                        // [a] -> [a,b]
-                        // [] -> [a,b]
-                        // [a,b] -> [a,b,c]
-                        return added * 2 - 1;
+                public E get(int index) {
+                    if (index < 0 || index >= size) {
+                        throw new IndexOutOfBoundsException();
                     }
+                    // index in [,a,,b,]
+                    int j = leading ? index : index + 1;
+                    return j % 2 == 0 ? delimiter : removed.get(j / 2);
                 }
 
 
                 @Override
-                public List<? extends E> getRemoved() {
-                    if (myRemoved == null) {
-                        List<? extends E> removed = mod.getRemoved();
-                        if (removed.size() > 0) {
-                            List<E> all = new ArrayList<>();
-                            for (E e : removed) {
-                                all.add(delimiter);
-                                all.add(e);
-                            }
-                            if (getFrom() == 1) {
-                                all.remove(0);
-                                if (source.size() == 1 && mod.getTo() != 1) {
-                                    // [a,b] -> [b]
-                                    // but not [a] -> [b]
-                                    all.add(delimiter);
-                                }
-                            }
-                            myRemoved = Collections.unmodifiableList(all);
-                        } else {
-                            myRemoved = Collections.emptyList();
-                        }
-                    }
-                    return myRemoved;
+                public int size() {
+                    return size;
                 }
-            });
-        };
+            };
+        }
     }
 
 
@@ -0,0 +1,202 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+import org.reactfx.Subscription;
+import org.reactfx.value.Val;
+import org.reactfx.value.ValBase;
+
+
+/**
+ * A string value escaped with an {@link Escaper}, which can report the changes of
+ * its raw value as minimal edits of the escaped text. Bound values that are escaped
+ * with an escaper are wrapped in one of these, see {@link #escape(Val, Function)}.
+ *
+ * <p>While edits are observed, the escaped offset of each raw offset is tracked with
+ * the positions of the escaped characters. When the raw value changes, its common
+ * prefix and suffix with the previous value are found, and only the raw characters
+ * in between are escaped. This relies on escapers escaping each character independently.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class EscapedVal extends ValBase<String> {
+
+    private final Val<String> myRaw;
+    private final Escaper myEscaper;
+
+
+    private EscapedVal(Val<String> raw, Escaper escaper) {
+        this.myRaw = raw;
+        this.myEscaper = escaper;
+    }
+
+
+    @Override
+    protected Subscription connect() {
+        return myRaw.observeInvalidations(old -> invalidate());
+    }
+
+
+    @Override
+    protected String computeValue() {
+        return myEscaper.apply(myRaw.getValue());
+    }
+
+
+    /**
+     * Observes the raw value, and reports its changes to the handler as
+     * edits of the escaped text. The offsets are relative to its start.
+     */
+    Subscription observeEdits(ReplaceHandler handler) {
+        return appendAndObserveEdits(null, handler);
+    }
+
+
+    /**
+     * Like {@link #observeEdits(ReplaceHandler)}, but first appends the escaped
+     * text to the given buffer. The raw value is escaped only once, straight into
+     * the buffer, without building the escaped string.
+     *
+     * @param out     Buffer to append to, if null nothing is appended
+     * @param handler Handler for the later edits
+     */
+    Subscription appendAndObserveEdits(StringBuilder out, ReplaceHandler handler) {
+        OffsetMap map = new OffsetMap(myEscaper, myRaw.getValue(), out);
+        return myRaw.changes().subscribe(ch -> map.update(ch.getNewValue(), handler, null));
+    }
+
+
+    /**
+     * Escapes the value with the given function. If it's an escaper and the
+     * value is not constant, then the result is an EscapedVal.
+     */
+    static Val<String> escape(Val<String> val, Function<String, String> escapeFun) {
+        if (escapeFun instanceof Escaper && !ReactfxExtensions.isConst(val)) {
+            return new EscapedVal(val, (Escaper) escapeFun);
+        }
+        return ReactfxExtensions.mapPreserveConst(val, escapeFun);
+    }
+
+
+    /** Maps raw offsets to escaped offsets, for the last seen raw value. */
+    private static final class OffsetMap {
+
+        private final Escaper myEscaper;
+        private String myRawText;
+        /** Raw offsets of the escaped characters, sorted. */
+        private int[] myEscapedIdx;
+        /** Number of characters added by escaping, up to and including each escaped character. */
+        private int[] myCumulativeExtra;
+        private int mySize;
+
+
+        /** Builds the map for the initial raw text, whose escaped text is appended to the buffer, if any. */
+        OffsetMap(Escaper escaper, String raw, StringBuilder out) {
+            this.myEscaper = escaper;
+            this.myRawText = "";
+            this.myEscapedIdx = new int[0];
+            this.myCumulativeExtra = new int[0];
+            update(raw, null, out);
+        }
+
+
+        /** Escaped offset of the given raw offset. */
+        private int escapedOffset(int rawOffset) {
+            int k = countBefore(rawOffset);
+            return rawOffset + (k == 0 ? 0 : myCumulativeExtra[k - 1]);
+        }
+
+
+        /** Number of escaped characters before the given raw offset. */
+        private int countBefore(int rawOffset) {
+            int i = Arrays.binarySearch(myEscapedIdx, 0, mySize, rawOffset);
+            return i >= 0 ? i : -i - 1;
+        }
+
+
+        /**
+         * Updates the map for the new raw text, and reports the edit of the escaped text
+         * to the handler, if any. If the buffer is not null, the escaped slice is appended
+         * to it instead of being built as a new string.
+         */
+        void update(String newRaw, ReplaceHandler handler, StringBuilder out) {
+            String old = myRawText;
+            String raw = newRaw == null ? "" : newRaw;
+
+            int maxCommon = Math.min(old.length(), raw.length());
+            int prefix = 0;
+            while (prefix < maxCommon && old.charAt(prefix) == raw.charAt(prefix)) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < maxCommon - prefix
+                && old.charAt(old.length() - 1 - suffix) == raw.charAt(raw.length() - 1 - suffix)) {
+                suffix++;
+            }
+
+            int oldEnd = old.length() - suffix;
+            int newEnd = raw.length() - suffix;
+            int escStart = escapedOffset(prefix);
+            int escEnd = escapedOffset(oldEnd);
+
+            // escape the changed slice, recording the escaped characters
+            int lo = countBefore(prefix);
+            int hi = countBefore(oldEnd);
+            int extra = lo == 0 ? 0 : myCumulativeExtra[lo - 1];
+            int oldTailExtra = hi == 0 ? 0 : myCumulativeExtra[hi - 1];
+
+            int[] idx = new int[mySize];
+            int[] cumulative = new int[mySize];
+            System.arraycopy(myEscapedIdx, 0, idx, 0, lo);
+            System.arraycopy(myCumulativeExtra, 0, cumulative, 0, lo);
+            int size = lo;
+
+            StringBuilder escaped = out != null ? out : new StringBuilder(newEnd - prefix);
+            int escapedStart = escaped.length();
+            int runStart = prefix;
+            int next = myEscaper.indexOfEscaped(raw, prefix, newEnd);
+            while (next >= 0) {
+                escaped.append(raw, runStart, next);
+                int before = escaped.length();
+                myEscaper.escapeTo(raw, next, next + 1, escaped);
+                extra += escaped.length() - before - 1;
+
+                if (size == idx.length) {
+                    idx = Arrays.copyOf(idx, size * 2 + 4);
+                    cumulative = Arrays.copyOf(cumulative, size * 2 + 4);
+                }
+                idx[size] = next;
+                cumulative[size] = extra;
+                size++;
+
+                runStart = next + 1;
+                next = myEscaper.indexOfEscaped(raw, runStart, newEnd);
+            }
+            escaped.append(raw, runStart, newEnd);
+
+            // shift the escaped characters of the common suffix
+            int tail = mySize - hi;
+            if (size + tail > idx.length) {
+                idx = Arrays.copyOf(idx, size + tail);
+                cumulative = Arrays.copyOf(cumulative, size + tail);
+            }
+            int shift = newEnd - oldEnd;
+            for (int i = hi; i < mySize; i++) {
+                idx[size] = myEscapedIdx[i] + shift;
+                cumulative[size] = myCumulativeExtra[i] - oldTailExtra + extra;
+                size++;
+            }
+
+            myRawText = raw;
+            myEscapedIdx = idx;
+            myCumulativeExtra = cumulative;
+            mySize = size;
+
+            if (handler != null && (escStart != escEnd || escaped.length() > escapedStart)) {
+                handler.replace(escStart, escEnd, escaped.substring(escapedStart));
+            }
+        }
+    }
+}
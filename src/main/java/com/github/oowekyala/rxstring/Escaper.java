@@ -0,0 +1,98 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.function.Function;
+
+
+/**
+ * An escape function that appends escaped text to a buffer instead of
+ * copying strings. It can be used as the {@linkplain LiveTemplateBuilder#withDefaultEscape(Function) default escape function}
+ * of a template. Strings that need no escaping are returned without copy.
+ *
+ * <p>When a template is bound, the bound values it escapes with an escaper are
+ * escaped straight into its text. Escapers must escape each character independently
+ * of the others. When such a value changes, only the slice that changed is escaped
+ * again, and the text of the template is edited in place. Values rendered in
+ * sequences are still escaped to strings.
+ *
+ * <p>Built-in escapers are available for {@linkplain #html() HTML}, {@linkplain #xml() XML}
+ * and {@linkplain #json() JSON} strings.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+public interface Escaper extends Function<String, String> {
+
+
+    /**
+     * Returns the index of the first character of the given range
+     * that must be escaped, or -1 if there is none.
+     *
+     * @param input Input text
+     * @param start Start of the range, inclusive
+     * @param end   End of the range, exclusive
+     */
+    int indexOfEscaped(CharSequence input, int start, int end);
+
+
+    /**
+     * Appends the escaped text of the given range of the input to the buffer.
+     *
+     * @param input Input text
+     * @param start Start of the range, inclusive
+     * @param end   End of the range, exclusive
+     * @param out   Buffer to append to
+     */
+    void escapeTo(CharSequence input, int start, int end, StringBuilder out);
+
+
+    /**
+     * Escapes the given string. If no character must be escaped, then
+     * the string is returned as is. Null is mapped to null.
+     *
+     * @param input String to escape
+     *
+     * @return The escaped string
+     */
+    @Override
+    default String apply(String input) {
+        if (input == null) {
+            return null;
+        }
+        int first = indexOfEscaped(input, 0, input.length());
+        if (first < 0) {
+            return input;
+        }
+
+        StringBuilder out = new StringBuilder(input.length() + 16);
+        out.append(input, 0, first);
+        escapeTo(input, first, input.length(), out);
+        return out.toString();
+    }
+
+
+    /**
+     * Escapes the characters {@code & < > " '} with HTML character references.
+     * The result is safe in text and in quoted attribute values.
+     */
+    static Escaper html() {
+        return CharEscaper.HTML;
+    }
+
+
+    /**
+     * Escapes the characters {@code & < > " '} with the predefined XML entities.
+     * The result is safe in text and in quoted attribute values.
+     */
+    static Escaper xml() {
+        return CharEscaper.XML;
+    }
+
+
+    /**
+     * Escapes the contents of a JSON string: quotes, backslashes and control
+     * characters. The surrounding quotes are not added.
+     */
+    static Escaper json() {
+        return CharEscaper.JSON;
+    }
+}
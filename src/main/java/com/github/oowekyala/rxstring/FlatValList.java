@@ -1,16 +1,19 @@
 package com.github.oowekyala.rxstring;
 
-import static java.util.Collections.singletonList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import org.reactfx.EventStreams;
 import org.reactfx.Subscription;
-import org.reactfx.collection.LiveList;
+import org.reactfx.collection.ListChangeAccumulator;
 import org.reactfx.collection.LiveListBase;
-import org.reactfx.collection.QuasiListChange;
 import org.reactfx.collection.QuasiListModification;
 import org.reactfx.collection.UnmodifiableByDefaultLiveList;
 import org.reactfx.value.Val;
 
 import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
 
 
@@ -19,17 +22,22 @@ import javafx.collections.ObservableList;
  * the interface of a LiveList&lt;T&gt; and subscribes to the changes of its individual
  * elements. See {@link ReactfxExtensions#flattenVals(ObservableList)}.
  *
+ * <p>While it's observed, this list keeps one observer per element of the source,
+ * which are updated when the structure of the source changes. Each change of an
+ * element is reported with a new modification, since observers may keep it, e.g.
+ * while they're suspended.
+ *
  * @author Clément Fournier
  */
 class FlatValList<T> extends LiveListBase<T> implements UnmodifiableByDefaultLiveList<T> {
 
     private final ObservableList<? extends ObservableValue<? extends T>> mySource;
-    private final LiveList<T> mapped;
+    /** Observers of the elements of the source, in the same order, maintained while this list is observed. */
+    private final List<Component> myComponents = new ArrayList<>();
 
 
     FlatValList(ObservableList<? extends ObservableValue<? extends T>> source) {
         this.mySource = source;
-        this.mapped = LiveList.map(source, ObservableValue::getValue);
     }
 
 
@@ -47,24 +55,91 @@ class FlatValList<T> extends LiveListBase<T> implements UnmodifiableByDefaultLiv
 
     @Override
     protected Subscription observeInputs() {
+        addComponents(0, mySource);
+        Subscription sourceSub = EventStreams.changesOf(mySource).subscribe(this::sourceChanged);
+        return () -> {
+            sourceSub.unsubscribe();
+            for (Component c : myComponents) {
+                c.unsubscribe();
+            }
+            myComponents.clear();
+        };
+    }
+
 
-        return Subscription.multi(
-            LiveList.observeQuasiChanges(mapped, this::notifyObservers),
-            ReactfxExtensions.dynamic(mySource,
-                                      (element, i) -> Val.observeChanges(element,
-                                                                   (obs, oldV, newV) -> componentChanged(i, oldV, newV)))
-        );
+    private void sourceChanged(Change<? extends ObservableValue<? extends T>> ch) {
+        ListChangeAccumulator<T> acc = new ListChangeAccumulator<>();
+        int firstMoved = myComponents.size();
+        while (ch.next()) {
+            int from = ch.getFrom();
+            firstMoved = Math.min(firstMoved, from);
+            if (ch.wasPermutated()) {
+                List<Component> moved = myComponents.subList(from, ch.getTo());
+                List<Component> old = new ArrayList<>(moved);
+                List<T> removed = new ArrayList<>(old.size());
+                for (int i = from; i < ch.getTo(); i++) {
+                    Component c = old.get(i - from);
+                    removed.add(c.myValue);
+                    myComponents.set(ch.getPermutation(i), c);
+                }
+                acc.add(QuasiListModification.create(from, removed, removed.size()));
+            } else if (ch.wasRemoved() || ch.wasAdded()) {
+                List<Component> removedComponents = myComponents.subList(from, from + ch.getRemovedSize());
+                List<T> removed = removedComponents.isEmpty() ? Collections.emptyList() : new ArrayList<>(removedComponents.size());
+                for (Component c : removedComponents) {
+                    c.unsubscribe();
+                    removed.add(c.myValue);
+                }
+                removedComponents.clear();
+                addComponents(from, ch.getAddedSubList());
+                acc.add(QuasiListModification.create(from, removed, ch.getAddedSize()));
+            }
+        }
+
+        for (int i = firstMoved; i < myComponents.size(); i++) {
+            myComponents.get(i).myIdx = i;
+        }
+
+        if (!acc.isEmpty()) {
+            notifyObservers(acc.fetch());
+        }
     }
 
 
-    private void componentChanged(int idx, T oldV, T newV) {
-        notifyObservers(componentChange(idx, oldV, newV));
+    private void addComponents(int from, List<? extends ObservableValue<? extends T>> elements) {
+        List<Component> added = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            added.add(new Component(elements.get(i), from + i));
+        }
+        myComponents.addAll(from, added);
     }
 
 
-    private static <T> QuasiListChange<T> componentChange(int sourceIdx, T oldV, T newV) {
-        return () -> singletonList(
-            QuasiListModification.create(sourceIdx, singletonList(oldV), 1)
-        );
+    /** Observer of an element of the source. */
+    private final class Component implements Subscription {
+
+        private final Subscription mySub;
+        private int myIdx;
+        /** Last value of the element. */
+        private T myValue;
+
+
+        Component(ObservableValue<? extends T> element, int idx) {
+            this.myIdx = idx;
+            this.myValue = element.getValue();
+            this.mySub = Val.observeChanges(element, (obs, oldV, newV) -> changed(oldV, newV));
+        }
+
+
+        private void changed(T oldV, T newV) {
+            myValue = newV;
+            notifyObservers(QuasiListModification.<T>create(myIdx, Collections.singletonList(oldV), 1).asListChange());
+        }
+
+
+        @Override
+        public void unsubscribe() {
+            mySub.unsubscribe();
+        }
     }
-}
\ No newline at end of file
+}
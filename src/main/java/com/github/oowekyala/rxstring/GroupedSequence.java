@@ -0,0 +1,193 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.reactfx.Subscription;
+import org.reactfx.value.Val;
+
+import com.github.oowekyala.rxstring.GroupedSequence.Member;
+import com.github.oowekyala.rxstring.ReactfxExtensions.SequenceListener;
+import javafx.beans.value.ObservableValue;
+
+
+/**
+ * The elements of a grouped sequence binding, see {@link LiveTemplateBuilder#bindGroupedSeq(Function, Function, ItemRenderer, ItemRenderer)}.
+ * Items are displayed in groups that share the same value of an observable key, each group
+ * after a header. Headers and items are elements of the same sequence. Group membership
+ * is maintained incrementally: a group is created when its first item arrives, and deleted
+ * when its last item leaves it. When the key of an item changes, only the text of that item
+ * is moved.
+ *
+ * <p>Groups are displayed in the order they were created. The items of a group are in
+ * the order they joined it, which is the order of the source list when it's first bound.
+ *
+ * @param <T> Type of items
+ * @param <K> Type of group keys
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class GroupedSequence<T, K> extends ObservableKeySequence<T, K, Member<K>> {
+
+    private final Function<K, Val<String>> myHeaderRenderer;
+    /** Groups in display order. */
+    private final List<Group<K>> myGroups = new ArrayList<>();
+    private final Map<K, Group<K>> myGroupsByKey = new HashMap<>();
+
+
+    GroupedSequence(Function<? super T, ? extends ObservableValue<? extends K>> keyExtractor,
+                    Function<K, Val<String>> headerRenderer,
+                    Function<T, Val<String>> itemRenderer,
+                    BiFunction<Integer, List<Val<String>>, List<ValIdx>> idxFactory,
+                    BiFunction<Val<String>, ValIdx, Subscription> binder,
+                    SequenceListener<?> listener) {
+        super(keyExtractor, itemRenderer, idxFactory, binder, listener);
+        this.myHeaderRenderer = headerRenderer;
+    }
+
+
+    @Override
+    Member<K> newEntry(ObservableValue<? extends K> key, Val<String> rendered) {
+        return new Member<>(key, rendered);
+    }
+
+
+    /** Builds the groups and inserts them in one block. */
+    @Override
+    void placeAll(List<Member<K>> added) {
+        Map<K, List<Member<K>>> grouped = new LinkedHashMap<>();
+        for (Member<K> entry : added) {
+            grouped.computeIfAbsent(entry.key.getValue(), k -> new ArrayList<>()).add(entry);
+        }
+
+        List<Val<String>> rendered = new ArrayList<>(grouped.size() + added.size());
+        for (Map.Entry<K, List<Member<K>>> members : grouped.entrySet()) {
+            Group<K> group = new Group<>(members.getKey(), myHeaderRenderer.apply(members.getKey()));
+            myGroups.add(group);
+            myGroupsByKey.put(group.key, group);
+            rendered.add(group.header);
+            for (Member<K> entry : members.getValue()) {
+                entry.group = group;
+                group.items.add(entry);
+                rendered.add(entry.rendered);
+            }
+        }
+
+        List<ValIdx> indices = newIndices(0, rendered);
+        int i = 0;
+        for (Group<K> group : myGroups) {
+            group.headerIdx = indices.get(i++);
+            group.headerSub = bindText(group.header, group.headerIdx);
+            for (Member<K> entry : group.items) {
+                bind(entry, indices.get(i++));
+            }
+        }
+    }
+
+
+    /**
+     * Appends the entry to the group of its current key, creating the group
+     * if needed. Returns the index where the element should be inserted.
+     */
+    @Override
+    int place(Member<K> entry) {
+        K key = entry.key.getValue();
+        Group<K> group = myGroupsByKey.get(key);
+        if (group == null) {
+            group = new Group<>(key, myHeaderRenderer.apply(key));
+            Group<K> last = myGroups.isEmpty() ? null : myGroups.get(myGroups.size() - 1);
+            int pos = last == null ? 0 : last.headerIdx.index() + 1 + last.items.size();
+            group.headerIdx = newIndices(pos, Collections.singletonList(group.header)).get(0);
+            group.headerSub = bindText(group.header, group.headerIdx);
+            myGroups.add(group);
+            myGroupsByKey.put(key, group);
+        }
+
+        entry.group = group;
+        group.items.add(entry);
+        return group.headerIdx.index() + group.items.size();
+    }
+
+
+    @Override
+    void remove(Member<K> entry) {
+        removeFromGroup(entry);
+        int pos = entry.idx.index();
+        myListener.removed(pos, pos + 1);
+    }
+
+
+    /** Moves the text of the element to its new group. */
+    @Override
+    void onKeyChange(Member<K> entry) {
+        String text = entry.idx.detach();
+        removeFromGroup(entry);
+        entry.idx.attach(place(entry), text);
+    }
+
+
+    @Override
+    int clear() {
+        int size = 0;
+        for (Group<K> group : myGroups) {
+            group.headerSub.unsubscribe();
+            size += 1 + group.items.size();
+        }
+        myGroups.clear();
+        myGroupsByKey.clear();
+        return size;
+    }
+
+
+    /**
+     * Removes the entry from its group, deleting the group if it's now empty.
+     * The text of the entry itself must be removed by the caller.
+     */
+    private void removeFromGroup(Member<K> entry) {
+        Group<K> group = entry.group;
+        group.items.remove(entry);
+        entry.group = null;
+        if (group.items.isEmpty()) {
+            group.headerSub.unsubscribe();
+            myGroups.remove(group);
+            myGroupsByKey.remove(group.key);
+            int pos = group.headerIdx.index();
+            myListener.removed(pos, pos + 1);
+        }
+    }
+
+
+    private static final class Group<K> {
+
+        final K key;
+        final Val<String> header;
+        final List<Member<K>> items = new ArrayList<>();
+        ValIdx headerIdx;
+        Subscription headerSub = Subscription.EMPTY;
+
+
+        Group(K key, Val<String> header) {
+            this.key = key;
+            this.header = header;
+        }
+    }
+
+
+    /** Item of a group. */
+    static final class Member<K> extends ObservableKeySequence.Entry<K> {
+
+        Group<K> group;
+
+
+        Member(ObservableValue<? extends K> key, Val<String> rendered) {
+            super(key, rendered);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.github.oowekyala.rxstring;
 
 import static com.github.oowekyala.rxstring.IndentHelper.wrapToWidth;
 
+import java.util.Objects;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -39,6 +40,73 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
     abstract ItemRenderer<T> escapeWith(Function<String, String> escapeFun);
 
 
+    /**
+     * Returns true if this renderer renders its items with a plain sub-template,
+     * whose data context is the rendered value. Bindings using such a renderer are
+     * compiled to {@link BindingExtractor.TemplateBinding}s.
+     */
+    boolean isTemplated() {
+        return false;
+    }
+
+
+    /**
+     * Returns true if this renderer is free of side effects, and can be called from
+     * any thread. Sequences rendered with such a renderer render large blocks of items
+     * in parallel.
+     */
+    boolean isPure() {
+        return false;
+    }
+
+
+    /**
+     * Returns true if the text rendered by this renderer only depends on the rendered
+     * value, and not on other observables. The text rendered for a value can then be
+     * reused as long as the value is the same, see {@link TemplatePlan#snapshotBindings(Object)}.
+     */
+    boolean isValueFunction() {
+        return false;
+    }
+
+
+    /**
+     * Returns true if the values returned by this renderer may be bound sub-templates.
+     * Those can't be rendered without observing their data context.
+     */
+    boolean createsSubtemplates() {
+        return false;
+    }
+
+
+    /**
+     * Renders the given value as plain text, without observing anything, e.g. to render
+     * a data context on a background thread. Null values are rendered as the empty string.
+     * Returns null if the value can only be rendered by binding it, e.g. because this
+     * renderer wraps the output of a sub-template.
+     *
+     * @param parent Builder of the enclosing template
+     * @param value  Value to render
+     */
+    String snapshot(LiveTemplateBuilder<?> parent, T value) {
+        if (createsSubtemplates()) {
+            return null;
+        }
+        String text = apply(parent, Val.constant(value)).getValue();
+        return text == null ? "" : text;
+    }
+
+
+    /**
+     * Returns the plan of the sub-template of a {@linkplain #isTemplated() templated} renderer.
+     *
+     * @param parent Builder of the enclosing template
+     */
+    TemplatePlan<T> getSubtemplatePlan(LiveTemplateBuilder<?> parent) {
+        throw new UnsupportedOperationException("Not a templated renderer");
+    }
+
+
     /**
      * A value renderer for anything, that maps it to string using
      * {@link Object#toString()}. When the value is null, the empty
@@ -58,7 +126,27 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
      * @param <T> Type of values this renderer can handle
      */
     public static <T> ItemRenderer<T> asString(Function<? super T, String> f) {
-        return MappedItemRenderer.mapping(false, f.andThen(Val::constant));
+        // constant values, e.g. sequence items, are mapped lazily, and only once
+        return new MappedItemRenderer<>(false, false, true, (ctx, tObs) -> ReactfxExtensions.mapPreserveConst(Val.wrap(tObs), f));
+    }
+
+
+    /**
+     * A value renderer that maps Ts to string using the provided function, which must be
+     * free of side effects and safe to call from any thread. When a sequence is bound with
+     * this renderer, large blocks of items are rendered in parallel on the common
+     * {@link java.util.concurrent.ForkJoinPool}, e.g. when the data context is set. The
+     * results are then inserted into the text, and the items observed, on the thread that
+     * set the data context or changed the list. Each item is rendered once.
+     *
+     * <p>Use this for expensive renderers of large sequences. Values that are not items
+     * of a sequence are rendered on the calling thread, like with {@link #asString(Function)}.
+     *
+     * @param f   Mapper from T to String, without side effects
+     * @param <T> Type of values this renderer can handle
+     */
+    public static <T> ItemRenderer<T> pure(Function<? super T, String> f) {
+        return new PureItemRenderer<>(false, f);
     }
 
 
@@ -116,6 +204,11 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
      * and {@link LiveTemplateBuilder#bindTemplate(Function, Consumer)} use under the hood. This method
      * allows you to combine it with other renderers, e.g. {@link #surrounded(String, String, ItemRenderer)}.
      *
+     * <p>The sub-template builder is called once, the first time the renderer is used.
+     * When passed to {@link LiveTemplateBuilder#render(Function, ItemRenderer)}, that's
+     * right away, since the sub-template is inlined into the enclosing one: the builder
+     * must not depend on state that is only set up later.
+     *
      * @param subTemplateBuilder A function side-effecting on the builder of the sub-template
      *                           to configure it
      * @param <T>                Type of values to render
@@ -123,7 +216,29 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
      * @return A value renderer for Ts
      */
     public static <T> ItemRenderer<T> templated(Consumer<LiveTemplateBuilder<T>> subTemplateBuilder) {
-        return new TemplatedItemRenderer<>(subTemplateBuilder);
+        return new TemplatedItemRenderer<>(subTemplateBuilder, null);
+    }
+
+
+    /**
+     * A value renderer that renders Ts using a nested live template, and reuses the
+     * sub-templates of items that show up again, e.g. after being moved in a sequence.
+     * Sub-templates are cached by the identity of their data context, see {@link SubtemplateCache}.
+     * Only items that are not observable values, i.e. items of a sequence or values of
+     * {@link LiveTemplateBuilder#renderTemplate(Function, Consumer)}, are cached.
+     *
+     * @param cache              Cache in which to park the sub-templates
+     * @param subTemplateBuilder A function side-effecting on the builder of the sub-template
+     *                           to configure it
+     * @param <T>                Type of values to render
+     *
+     * @return A value renderer for Ts
+     *
+     * @throws NullPointerException if the cache is null
+     * @see #templated(Consumer)
+     */
+    public static <T> ItemRenderer<T> templated(SubtemplateCache cache, Consumer<LiveTemplateBuilder<T>> subTemplateBuilder) {
+        return new TemplatedItemRenderer<>(subTemplateBuilder, Objects.requireNonNull(cache));
     }
 
 
@@ -160,7 +275,10 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
      * @return A value renderer for Ts
      */
     public static <T> ItemRenderer<T> wrapped(int wrapWidth, int indentLevel, boolean preserveWords, ItemRenderer<T> wrapped) {
-        return new MappedItemRenderer<>(false, (ctx, t) -> Val.map(wrapped.apply(ctx, t), s -> wrapToWidth(s, ctx.getDefaultIndent(), indentLevel, wrapWidth, preserveWords)));
+        return new MappedItemRenderer<>(false,
+                                        wrapped.createsSubtemplates(),
+                                        wrapped.isValueFunction(),
+                                        (ctx, t) -> Val.map(wrapped.apply(ctx, t), s -> wrapToWidth(s, ctx.getDefaultIndent(), indentLevel, wrapWidth, preserveWords)));
     }
 
     // TODO handle multiline content
@@ -177,6 +295,7 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
      * nested template and not 3.
      */
     private static <T> ItemRenderer<T> templatedWrapper(ItemRenderer<T> base, Consumer<LiveTemplateBuilder<T>> before, Consumer<LiveTemplateBuilder<T>> after) {
+        SubtemplateCache cache = base instanceof TemplatedItemRenderer ? ((TemplatedItemRenderer<T>) base).myCache : null;
         return new TemplatedItemRenderer<>(b -> {
             before.accept(b);
 
@@ -187,7 +306,7 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
             }
 
             after.accept(b);
-        });
+        }, cache);
     }
 
 
@@ -195,11 +314,18 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
         private final BiFunction<? super LiveTemplateBuilder<?>, ? super ObservableValue<? extends T>, ? extends Val<String>> myFun;
 
         private final boolean myNoEscape;
+        private final boolean myCreatesSubtemplates;
+        private final boolean myIsValueFunction;
 
 
         /** Most general constructor. */
-        private MappedItemRenderer(boolean ignoreEscape, BiFunction<? super LiveTemplateBuilder<?>, ? super ObservableValue<? extends T>, ? extends Val<String>> myFun) {
+        private MappedItemRenderer(boolean ignoreEscape,
+                                   boolean createsSubtemplates,
+                                   boolean isValueFunction,
+                                   BiFunction<? super LiveTemplateBuilder<?>, ? super ObservableValue<? extends T>, ? extends Val<String>> myFun) {
             this.myNoEscape = ignoreEscape;
+            this.myCreatesSubtemplates = createsSubtemplates;
+            this.myIsValueFunction = isValueFunction;
             this.myFun = myFun;
         }
 
@@ -213,7 +339,19 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
 
 
         public ItemRenderer<T> escapeWith(Function<String, String> escapeFun) {
-            return myNoEscape ? this : new MappedItemRenderer<>(true, myFun.andThen(v -> ReactfxExtensions.mapPreserveConst(v, escapeFun)));
+            return myNoEscape ? this : new MappedItemRenderer<>(true, myCreatesSubtemplates, myIsValueFunction, myFun.andThen(v -> EscapedVal.escape(v, escapeFun)));
+        }
+
+
+        @Override
+        boolean createsSubtemplates() {
+            return myCreatesSubtemplates;
+        }
+
+
+        @Override
+        boolean isValueFunction() {
+            return myIsValueFunction;
         }
 
 
@@ -223,20 +361,66 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
 
 
         static <T> MappedItemRenderer<T> mappingObs(boolean ignoreEscape, Function<? super ObservableValue<? extends T>, ? extends Val<String>> fun) {
-            return new MappedItemRenderer<>(ignoreEscape, (ctx, tObs) -> fun.apply(tObs));
+            return new MappedItemRenderer<>(ignoreEscape, false, false, (ctx, tObs) -> fun.apply(tObs));
+        }
+
+    }
+
+
+    private static class PureItemRenderer<T> extends ItemRenderer<T> {
+        private final Function<? super T, String> myFun;
+
+        private final boolean myNoEscape;
+
+
+        private PureItemRenderer(boolean ignoreEscape, Function<? super T, String> fun) {
+            this.myNoEscape = ignoreEscape;
+            this.myFun = fun;
+        }
+
+
+        @Override
+        public Val<String> apply(LiveTemplateBuilder<?> liveTemplateBuilder, ObservableValue<? extends T> tObs) {
+            // items of a sequence are constant, their rendering is too
+            return ReactfxExtensions.isConst(tObs) ? Val.constant(render(tObs.getValue())) : Val.map(tObs, myFun);
+        }
+
+
+        private String render(T t) {
+            return t == null ? null : myFun.apply(t);
+        }
+
+
+        @Override
+        boolean isPure() {
+            return true;
         }
 
+
+        @Override
+        boolean isValueFunction() {
+            return true;
+        }
+
+
+        @Override
+        public ItemRenderer<T> escapeWith(Function<String, String> escapeFun) {
+            return myNoEscape ? this : new PureItemRenderer<>(true, myFun.andThen(escapeFun));
+        }
     }
 
 
     private static class TemplatedItemRenderer<T> extends ItemRenderer<T> {
 
         private final Consumer<LiveTemplateBuilder<T>> subTemplateBuilderSpec;
-        private LiveTemplateBuilder<T> subTemplateBuilder;
+        /** Nullable. */
+        private final SubtemplateCache myCache;
+        private TemplatePlan<T> subTemplatePlan;
 
 
-        TemplatedItemRenderer(Consumer<LiveTemplateBuilder<T>> subtemplateBuilder) {
+        TemplatedItemRenderer(Consumer<LiveTemplateBuilder<T>> subtemplateBuilder, SubtemplateCache cache) {
             this.subTemplateBuilderSpec = subtemplateBuilder;
+            this.myCache = cache;
         }
 
 
@@ -247,18 +431,53 @@ public abstract class ItemRenderer<T> implements BiFunction<LiveTemplateBuilder<
 
 
         @Override
-        public Val<String> apply(LiveTemplateBuilder<?> parent, ObservableValue<? extends T> tObs) {
-            if (subTemplateBuilder == null) {
-                LiveTemplateBuilder<T> childBuilder = parent instanceof LiveTemplateBuilderImpl
-                                                      ? ((LiveTemplateBuilderImpl) parent).spawnChildWithSameConfig()
-                                                      : LiveTemplate.newBuilder();
+        boolean isTemplated() {
+            return myCache == null;
+        }
+
+
+        @Override
+        boolean createsSubtemplates() {
+            return true;
+        }
+
+
+        @Override
+        String snapshot(LiveTemplateBuilder<?> parent, T value) {
+            return value == null ? "" : getSubtemplatePlan(parent).snapshot(value);
+        }
+
+
+        @Override
+        TemplatePlan<T> getSubtemplatePlan(LiveTemplateBuilder<?> parent) {
+            if (subTemplatePlan == null) {
+                LiveTemplateBuilderImpl<T> childBuilder = parent instanceof LiveTemplateBuilderImpl
+                                                          ? ((LiveTemplateBuilderImpl<?>) parent).spawnChildWithSameConfig()
+                                                          : new LiveTemplateBuilderImpl<>();
 
                 subTemplateBuilderSpec.accept(childBuilder);
                 // only build the template once
-                subTemplateBuilder = childBuilder;
+                subTemplatePlan = childBuilder.toPlan();
             }
-            LiveTemplate<T> subTemplate = subTemplateBuilder.toTemplate();
-            subTemplate.dataContextProperty().unbind();
+            return subTemplatePlan;
+        }
+
+
+        @Override
+        public Val<String> apply(LiveTemplateBuilder<?> parent, ObservableValue<? extends T> tObs) {
+            TemplatePlan<T> plan = getSubtemplatePlan(parent);
+
+            if (myCache != null && ReactfxExtensions.isConst(tObs) && tObs.getValue() != null) {
+                T item = tObs.getValue();
+                return myCache.lend(this, item, () -> {
+                    LiveTemplateImpl<T> subTemplate = new LiveTemplateImpl<>(plan);
+                    subTemplate.setCache(myCache, this);
+                    subTemplate.setDataContext(item);
+                    return subTemplate;
+                });
+            }
+
+            LiveTemplate<T> subTemplate = new LiveTemplateImpl<>(plan);
             subTemplate.dataContextProperty().bind(tObs);
 
             return subTemplate;
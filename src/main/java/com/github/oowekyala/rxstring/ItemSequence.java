@@ -0,0 +1,47 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.List;
+import java.util.function.BiFunction;
+
+import org.reactfx.Subscription;
+import org.reactfx.value.Val;
+
+import com.github.oowekyala.rxstring.ReactfxExtensions.SequenceListener;
+import javafx.collections.ObservableList;
+
+
+/**
+ * Elements of a sequence binding that manages its own elements, e.g. a {@link KeyedSequence}.
+ * The same instance is kept when the template is rebound, only its source list is replaced.
+ * Unsubscribing it deletes all the elements.
+ *
+ * @param <T> Type of items
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+interface ItemSequence<T> extends Subscription {
+
+    /** Observes the given list, instead of the current one if any. */
+    void bindTo(ObservableList<? extends T> source);
+
+
+    /**
+     * Creates the elements of a sequence binding, given how to write their text
+     * into the template.
+     *
+     * @param <T> Type of items
+     */
+    @FunctionalInterface
+    interface Factory<T> {
+
+        /**
+         * @param idxFactory Creates the text ranges of a block of elements starting at the given index, with their current text
+         * @param binder     Binds the text of an element to its range
+         * @param listener   Updates the text ranges of elements that were removed or permuted, in bulk
+         */
+        ItemSequence<T> create(BiFunction<Integer, List<Val<String>>, List<ValIdx>> idxFactory,
+                               BiFunction<Val<String>, ValIdx, Subscription> binder,
+                               SequenceListener<?> listener);
+    }
+}
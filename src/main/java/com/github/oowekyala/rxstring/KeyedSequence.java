@@ -0,0 +1,255 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.reactfx.EventStreams;
+import org.reactfx.Subscription;
+import org.reactfx.value.Val;
+import org.reactfx.value.Var;
+
+import com.github.oowekyala.rxstring.ReactfxExtensions.SequenceListener;
+import javafx.collections.ListChangeListener.Change;
+import javafx.collections.ObservableList;
+
+
+/**
+ * The elements of a keyed sequence binding, see {@link LiveTemplateBuilder#bindSeq(Function, Function, ItemRenderer)}.
+ * Unlike {@link ReactfxExtensions#dynamicRecombine(ObservableList, BiFunction)}, which matches
+ * removed and added items by position, items are matched by key. An element whose key is still
+ * in the list keeps its text and subscriptions. If it changed position, its text is moved, and
+ * if the item itself was replaced by another object with the same key, the element is rebound
+ * to the new item in place.
+ *
+ * <p>Moves are kept to a minimum: the elements that keep their relative order (a longest
+ * increasing subsequence of their old positions) stay where they are, and only the others
+ * are moved. Permutations of the list, e.g. sorting it, are applied in a single pass.
+ * Replacements, e.g. {@code list.set(i, item)}, only reconcile the replaced range, so
+ * that replacing a few items costs time proportional to their number, not to the size of
+ * the list. Keys are only matched within that range, so an item that is replaced by one
+ * whose key is elsewhere in the list gets a new element.
+ *
+ * @param <T> Type of items
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class KeyedSequence<T> implements ItemSequence<T> {
+
+    private final Function<? super T, ?> myKeyFunction;
+    private final Function<Val<T>, Val<String>> myRenderer;
+    /** Creates the text ranges of a block of elements starting at the given index, with their current text. */
+    private final BiFunction<Integer, List<Val<String>>, List<ValIdx>> myIdxFactory;
+    /** Binds the text of an element to its range. */
+    private final BiFunction<Val<String>, ValIdx, Subscription> myBinder;
+    /** Updates the text ranges of elements that were removed or permuted, in bulk. */
+    private final SequenceListener<?> myListener;
+    /** Current elements, in the order of the source list. */
+    private final List<Entry<T>> myEntries = new ArrayList<>();
+
+    private Subscription mySourceSub = Subscription.EMPTY;
+
+
+    KeyedSequence(Function<? super T, ?> keyFunction,
+                  Function<Val<T>, Val<String>> renderer,
+                  BiFunction<Integer, List<Val<String>>, List<ValIdx>> idxFactory,
+                  BiFunction<Val<String>, ValIdx, Subscription> binder,
+                  SequenceListener<?> listener) {
+        this.myKeyFunction = keyFunction;
+        this.myRenderer = renderer;
+        this.myIdxFactory = idxFactory;
+        this.myBinder = binder;
+        this.myListener = listener;
+    }
+
+
+    /**
+     * Observes the given list. The current elements are reconciled with the items
+     * of the list, so that elements are reused across data contexts too.
+     */
+    @Override
+    public void bindTo(ObservableList<? extends T> source) {
+        mySourceSub.unsubscribe();
+        reconcile(0, myEntries.size(), source);
+        mySourceSub = EventStreams.changesOf(source).subscribe(this::onChange);
+    }
+
+
+    @Override
+    public void unsubscribe() {
+        mySourceSub.unsubscribe();
+        mySourceSub = Subscription.EMPTY;
+        removeEntries(0, myEntries.size());
+    }
+
+
+    private void onChange(Change<? extends T> ch) {
+        while (ch.next()) {
+            int from = ch.getFrom();
+            if (ch.wasPermutated()) {
+                permute(ch);
+            } else if (ch.wasReplaced()) {
+                reconcile(from, from + ch.getRemovedSize(), ch.getAddedSubList());
+            } else if (ch.wasRemoved()) {
+                removeEntries(from, from + ch.getRemovedSize());
+            } else {
+                addEntries(from, ch.getAddedSubList());
+            }
+        }
+    }
+
+
+    /** Reorders the elements in one pass, see {@link ValIdx#permute}. */
+    private void permute(Change<? extends T> ch) {
+        List<Entry<T>> moved = new ArrayList<>(myEntries.subList(ch.getFrom(), ch.getTo()));
+        for (int i = ch.getFrom(); i < ch.getTo(); i++) {
+            myEntries.set(ch.getPermutation(i), moved.get(i - ch.getFrom()));
+        }
+        myListener.permuted(ch);
+    }
+
+
+    /**
+     * Brings the elements in the range [from, to) in sync with the given items,
+     * which replace them. The elements outside the range are left untouched.
+     */
+    private void reconcile(int from, int to, List<? extends T> items) {
+        // match elements by key, duplicate keys are matched in order
+        Map<Object, ArrayDeque<Entry<T>>> byKey = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            Entry<T> entry = myEntries.get(i);
+            entry.oldPos = i;
+            entry.matched = false;
+            byKey.computeIfAbsent(entry.key, k -> new ArrayDeque<>()).add(entry);
+        }
+
+        List<Entry<T>> matched = new ArrayList<>(items.size());
+        for (T item : items) {
+            ArrayDeque<Entry<T>> candidates = byKey.get(myKeyFunction.apply(item));
+            Entry<T> entry = candidates == null ? null : candidates.poll();
+            if (entry != null) {
+                entry.matched = true;
+            }
+            matched.add(entry);
+        }
+
+        markStable(matched);
+
+        // delete the elements whose key is gone, and detach those that move
+        for (int i = to - 1; i >= from; i--) {
+            Entry<T> entry = myEntries.get(i);
+            if (!entry.matched) {
+                removeEntries(i, i + 1);
+            } else if (!entry.stable) {
+                entry.detachedText = entry.idx.detach();
+                myEntries.remove(i);
+            }
+        }
+
+        // now the stable elements are in order, the others are inserted around them
+        for (int i = 0; i < items.size(); i++) {
+            Entry<T> entry = matched.get(i);
+            T item = items.get(i);
+            if (entry == null) {
+                // consecutive new elements are added in one block
+                int end = i + 1;
+                while (end < items.size() && matched.get(end) == null) {
+                    end++;
+                }
+                addEntries(from + i, items.subList(i, end));
+                i = end - 1;
+                continue;
+            } else if (!entry.stable) {
+                entry.idx.attach(from + i, entry.detachedText);
+                entry.detachedText = null;
+                myEntries.add(from + i, entry);
+            }
+
+            if (entry.item.getValue() != item) {
+                entry.item.setValue(item);
+            }
+        }
+    }
+
+
+    /**
+     * Marks the matched elements whose old positions form a longest increasing
+     * subsequence, in the new order. Those don't need to move.
+     */
+    private static <T> void markStable(List<Entry<T>> matched) {
+        List<Entry<T>> present = new ArrayList<>(matched.size());
+        for (Entry<T> entry : matched) {
+            if (entry != null) {
+                present.add(entry);
+            }
+        }
+
+        int[] oldPositions = new int[present.size()];
+        for (int i = 0; i < oldPositions.length; i++) {
+            oldPositions[i] = present.get(i).oldPos;
+        }
+
+        boolean[] stable = ValIdx.stableIndices(oldPositions);
+        for (int i = 0; i < stable.length; i++) {
+            present.get(i).stable = stable[i];
+        }
+    }
+
+
+    /** Adds elements for the given items, their text is inserted in one pass. */
+    private void addEntries(int from, List<? extends T> items) {
+        List<Var<T>> itemVars = new ArrayList<>(items.size());
+        List<Val<String>> rendered = new ArrayList<>(items.size());
+        for (T item : items) {
+            Var<T> itemVar = Var.newSimpleVar(item);
+            itemVars.add(itemVar);
+            rendered.add(myRenderer.apply(itemVar));
+        }
+
+        List<ValIdx> indices = myIdxFactory.apply(from, rendered);
+        List<Entry<T>> added = new ArrayList<>(items.size());
+        for (int k = 0; k < items.size(); k++) {
+            Subscription sub = myBinder.apply(rendered.get(k), indices.get(k));
+            added.add(new Entry<>(myKeyFunction.apply(items.get(k)), itemVars.get(k), indices.get(k), sub));
+        }
+        myEntries.addAll(from, added);
+    }
+
+
+    private void removeEntries(int from, int to) {
+        List<Entry<T>> removed = myEntries.subList(from, to);
+        for (Entry<T> entry : removed) {
+            entry.sub.unsubscribe();
+        }
+        removed.clear();
+        myListener.removed(from, to);
+    }
+
+
+    private static final class Entry<T> {
+
+        final Object key;
+        final Var<T> item;
+        final ValIdx idx;
+        final Subscription sub;
+
+        // state used while reconciling
+        int oldPos;
+        boolean matched;
+        boolean stable;
+        String detachedText;
+
+
+        Entry(Object key, Var<T> item, ValIdx idx, Subscription sub) {
+            this.key = key;
+            this.item = item;
+            this.idx = idx;
+            this.sub = sub;
+        }
+    }
+}
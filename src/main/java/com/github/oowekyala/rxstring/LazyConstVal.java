@@ -0,0 +1,39 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.reactfx.RigidObservable;
+import org.reactfx.value.Val;
+
+
+/**
+ * A constant value that's computed on first read, and memoized. Like {@link Val#constant(Object)},
+ * it never changes and is recognised as {@linkplain ReactfxExtensions#isConst(javafx.beans.value.ObservableValue) constant},
+ * but creating it costs nothing. This is used to map constants without evaluating them,
+ * so that the parts of a template that are never bound are never rendered.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class LazyConstVal<T> extends RigidObservable<Consumer<? super T>> implements Val<T> {
+
+    /** Null once the value is computed. */
+    private Supplier<? extends T> mySupplier;
+    private T myValue;
+
+
+    LazyConstVal(Supplier<? extends T> supplier) {
+        this.mySupplier = supplier;
+    }
+
+
+    @Override
+    public T getValue() {
+        if (mySupplier != null) {
+            myValue = mySupplier.get();
+            mySupplier = null;
+        }
+        return myValue;
+    }
+}
@@ -1,11 +1,17 @@
 package com.github.oowekyala.rxstring;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
 
 import org.reactfx.Subscription;
 import org.reactfx.value.Val;
 import org.reactfx.value.Var;
 
+import javafx.application.Platform;
+
 
 /**
  * A {@link Val}&lt;String&gt; that binds to the properties of an object and reacts their changes.
@@ -61,6 +67,106 @@ public interface LiveTemplate<D> extends Val<String> {
     }
 
 
+    /**
+     * Renders the text of this template for the given data context on the
+     * {@linkplain ForkJoinPool#commonPool() common pool}, then binds the template to
+     * that context on the JavaFX application thread. See {@link #prepareDataContext(Object, Executor, Executor)}.
+     *
+     * @param context The new data context
+     *
+     * @return A future completed with true if the new text was swapped in, false if it was discarded
+     *
+     * @throws NullPointerException if the context is null
+     */
+    default CompletableFuture<Boolean> prepareDataContext(D context) {
+        return prepareDataContext(context, ForkJoinPool.commonPool(), Platform::runLater);
+    }
+
+
+    /**
+     * Rebinds this template to the given data context, but renders the text bound to the new
+     * context on the given render executor, along with the diff-based edit from the current text.
+     * The template is then bound to the new context on the swap executor (typically the JavaFX
+     * application thread), and the replace handlers are notified of the prepared edit, in a single
+     * pass. Properties are only observed on the swap executor, the render executor merely reads
+     * their values.
+     *
+     * <p>The text is rendered from a snapshot of the values of the new context. During the swap,
+     * bindings whose text only depends on their value (e.g. those rendered with
+     * {@link ItemRenderer#asString()} or {@link LiveTemplateBuilder#bindInt(java.util.function.Function)})
+     * reuse the prepared text if their value is the same, and are only rendered again when it changes.
+     * The other bindings, e.g. sequences and sub-templates, are rendered again during the swap.
+     * If some values changed before the swap, or if some bindings can't be rendered without observing
+     * them (e.g. sequences with a custom {@link SeqRenderer}), the edit is computed during the swap
+     * instead. If the data context of this template has changed between this call and the swap, or
+     * if the {@linkplain #dataContextProperty() data context property} is bound, the prepared text
+     * is discarded and the data context is left untouched.
+     *
+     * @param context        The new data context
+     * @param renderExecutor Executor on which to render the text
+     * @param swapExecutor   Executor on which to swap the text in
+     *
+     * @return A future completed with true if the new text was swapped in, false if it was discarded
+     *
+     * @throws NullPointerException if the context is null
+     * @see #setDataContext(Object)
+     */
+    CompletableFuture<Boolean> prepareDataContext(D context, Executor renderExecutor, Executor swapExecutor);
+
+
+    /**
+     * Requests a change of data context, which is applied according to the
+     * {@linkplain #rebindPolicyProperty() rebind policy} of this template. With
+     * the default policy, this is the same as {@link #setDataContext(Object)}.
+     * With a {@linkplain RebindPolicy#latestWins(Duration) latest-wins} policy,
+     * the change is applied later, and only if no other request was made in the
+     * meantime. A pending request is also dropped if the data context is set by
+     * other means, or if the data context property is bound. Dropped requests are
+     * counted by {@link #getElidedRebindCount()}. This method may be called from
+     * any thread.
+     *
+     * @param context The new data context
+     *
+     * @see #setDataContext(Object)
+     */
+    void requestDataContext(D context);
+
+
+    /**
+     * The policy used to apply the data context changes requested with
+     * {@link #requestDataContext(Object)}. This is {@link RebindPolicy#immediate()}
+     * by default.
+     */
+    Var<RebindPolicy> rebindPolicyProperty();
+
+
+    /**
+     * Sets {@link #rebindPolicyProperty()} to the given value.
+     *
+     * @param policy The new policy
+     */
+    default void setRebindPolicy(RebindPolicy policy) {
+        rebindPolicyProperty().setValue(policy);
+    }
+
+
+    /**
+     * Returns the current value of {@link #rebindPolicyProperty()}.
+     */
+    default RebindPolicy getRebindPolicy() {
+        return rebindPolicyProperty().getValue();
+    }
+
+
+    /**
+     * Returns the number of rebinds that were skipped because they were
+     * superseded by a more recent one. This counts the requests dropped by
+     * the {@linkplain #rebindPolicyProperty() rebind policy}, and the prepared
+     * contexts discarded by {@link #prepareDataContext(Object, Executor, Executor)}.
+     */
+    long getElidedRebindCount();
+
+
     /**
      * Returns the current data context, or null if there is none.
      *
@@ -175,4 +281,28 @@ public interface LiveTemplate<D> extends Val<String> {
         return new LiveTemplateBuilderImpl<>();
     }
 
+
+    /**
+     * Returns a new live template specified by a string, e.g.
+     * {@code "Name: ${name} (${children; sep=', '})"}. {@code ${name}} binds
+     * the property {@code name} of the data context, found by reflection.
+     * Sequence properties accept the options {@code sep}, {@code prefix} and
+     * {@code suffix}. {@code $$} is a literal {@code $}.
+     *
+     * <p>The template source is compiled once per data class, and the compiled
+     * form is shared by all the templates created from the same source.
+     *
+     * @param source    Source of the template
+     * @param dataClass Class of the data context, whose properties are bound
+     * @param <D>       Type of data context
+     *
+     * @return A new template, not bound to a data context
+     *
+     * @throws IllegalArgumentException If the source is malformed, or refers to properties
+     *                                  the data class doesn't have
+     */
+    static <D> LiveTemplate<D> fromText(String source, Class<D> dataClass) {
+        return new LiveTemplateImpl<>(TemplateParser.getPlan(source, dataClass));
+    }
+
 }
@@ -2,6 +2,7 @@ package com.github.oowekyala.rxstring;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Consumer;
@@ -9,8 +10,12 @@ import java.util.function.Function;
 
 import org.reactfx.Subscription;
 import org.reactfx.collection.LiveArrayList;
+import org.reactfx.collection.LiveList;
 import org.reactfx.value.Val;
 
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.beans.value.ObservableIntegerValue;
+import javafx.beans.value.ObservableLongValue;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 import javafx.util.Callback;
@@ -88,6 +93,8 @@ public interface LiveTemplateBuilder<D> {
      * all data-to-string conversions. This is useful e.g. if you're building a
      * template for an XML document, and would like to specify that all conversion
      * functions must be escaped for XML. The default is just the identity function.
+     * Prefer an {@link Escaper}, e.g. {@link Escaper#xml()}, which doesn't copy the
+     * strings that need no escaping.
      *
      * <p>Note: the escape function is not applied to whole {@linkplain #bindTemplate(Function, Consumer) sub-templates},
      * but is passed on to their builder and applied to their own {@linkplain #bind(Function, ItemRenderer) bind calls}
@@ -198,6 +205,11 @@ public interface LiveTemplateBuilder<D> {
      * if your value is observable, {@link #bindSeq(Function, SeqRenderer)} if it's
      * an observable list.
      *
+     * <p>If the renderer is {@linkplain ItemRenderer#templated(Consumer) templated}, the
+     * sub-template is inlined into this template, so its builder is called by this method,
+     * rather than when the template is first bound. Only sub-templates nested a few levels
+     * deep are inlined, so that recursive specifications terminate.
+     *
      * @param extractor Extracts the value to render from the data context
      * @param renderer  An object specifying how the value should be converted to a string
      * @param <T>       Type of value to extract
@@ -224,6 +236,9 @@ public interface LiveTemplateBuilder<D> {
      * changes to the string value will be scoped down to the individual changes in the
      * properties of the sub context, which improves the resolution of the external handler calls.
      *
+     * <p>The sub-template is inlined into this template, so the sub-template builder is
+     * called by this method, see {@link #render(Function, ItemRenderer)}.
+     *
      * @param extractor          Extracts the data context of the sub-template from the data context
      *                           of this template
      * @param subTemplateBuilder A function side-effecting on the builder of the sub-template
@@ -299,6 +314,80 @@ public interface LiveTemplateBuilder<D> {
     }
 
 
+    /**
+     * Binds an int property of the data context. This is like {@link #bind(Function)}, but
+     * the value is never boxed. Its digits are formatted into a reusable buffer, and only
+     * when the value changed. The default escape function is not applied.
+     *
+     * @param extractor Extracts the observable value to render from the data context
+     *
+     * @return This builder
+     *
+     * @see #bindLong(Function)
+     * @see #bindDouble(Function)
+     */
+    LiveTemplateBuilder<D> bindInt(Function<? super D, ? extends ObservableIntegerValue> extractor);
+
+
+    /**
+     * Binds a long property of the data context, without boxing. See {@link #bindInt(Function)}.
+     *
+     * @param extractor Extracts the observable value to render from the data context
+     *
+     * @return This builder
+     */
+    LiveTemplateBuilder<D> bindLong(Function<? super D, ? extends ObservableLongValue> extractor);
+
+
+    /**
+     * Binds a double property of the data context, without boxing. See {@link #bindInt(Function)}.
+     * The value is formatted like with {@link Double#toString(double)}.
+     *
+     * @param extractor Extracts the observable value to render from the data context
+     *
+     * @return This builder
+     */
+    LiveTemplateBuilder<D> bindDouble(Function<? super D, ? extends ObservableDoubleValue> extractor);
+
+
+    /**
+     * Binds a property of the data context by name, to be rendered with {@link Object#toString()}.
+     * See {@link #bindProperty(String, ItemRenderer)}.
+     *
+     * @param propertyName Name of the property
+     *
+     * @return This builder
+     */
+    default LiveTemplateBuilder<D> bindProperty(String propertyName) {
+        return bindProperty(propertyName, ItemRenderer.asString());
+    }
+
+
+    /**
+     * Binds a property of the data context by name. The property {@code name} is the observable value
+     * returned by the first of the following public members of the data context: a method
+     * {@code nameProperty()}, {@code getName()}, {@code isName()}, {@code name()}, or a field {@code name}.
+     *
+     * <p>The accessor is looked up once per class of data context and cached, binding
+     * is then as fast as with a method reference.
+     *
+     * @param propertyName Name of the property
+     * @param renderer     An object specifying how the value should be converted to a string
+     * @param <T>          Type of values to render
+     *
+     * @return This builder
+     *
+     * @throws IllegalArgumentException When the template is bound, if the data context has no
+     *                                  such property, or if it's not an {@link ObservableValue}
+     * @see #bind(Function, ItemRenderer)
+     */
+    @SuppressWarnings("unchecked")
+    default <T> LiveTemplateBuilder<D> bindProperty(String propertyName, ItemRenderer<? super T> renderer) {
+        Function<Object, Object> getter = PropertyAccessor.getter(propertyName, ObservableValue.class);
+        return bind(d -> (ObservableValue<T>) getter.apply(d), renderer);
+    }
+
+
     /**
      * Binds a property of the data context to be presented with a sub-template.
      * The value of the property will be used as the data context of the sub template.
@@ -400,6 +489,163 @@ public interface LiveTemplateBuilder<D> {
     }
 
 
+    /**
+     * Binds a property of the data context that returns an observable list of items,
+     * whose elements are identified by a key. Each item will be mapped to a string using
+     * the specified {@link ItemRenderer}.
+     *
+     * <p>When the list changes, items are matched with the existing elements by key rather
+     * than by position. The text of an element whose item was moved is moved, instead of
+     * being rendered again. When an item is replaced by another object with the same key,
+     * its element is rebound to the new item, e.g. a sub-template is rebound in place.
+     * Replace handlers only see the minimal set of deletions and insertions. This is most
+     * useful when the list is sorted, or when its content is replaced wholesale by equivalent
+     * items (e.g. with {@link ObservableList#setAll(Object[])}).
+     *
+     * @param <T>         Type of items of the list
+     * @param extractor   List extractor
+     * @param keyFunction Computes the key of an item. Keys are compared with {@link Object#equals(Object)},
+     *                    and the key of an item shouldn't change while it's in the list
+     * @param renderer    Renderer function for items
+     *
+     * @return This builder
+     *
+     * @see #bindSeq(Function, ItemRenderer)
+     */
+    <T> LiveTemplateBuilder<D> bindSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                       Function<? super T, ?> keyFunction,
+                                       ItemRenderer<? super T> renderer);
+
+
+    /**
+     * Binds a property of the data context that returns an observable list of items,
+     * of which only the first ones are displayed. Each item will be mapped to a string
+     * using the specified {@link ItemRenderer}. The rest of the list is summarised by the
+     * given function, which is passed the number of hidden items, e.g. {@code "… and 3 more"}.
+     * If no item is hidden, the summary is empty.
+     *
+     * <p>Only the displayed items are rendered and observed, so this can be used on large
+     * lists. When items are added or removed before the limit, items at the boundary are
+     * promoted or demoted. The summary is only updated when the size of the list changes.
+     *
+     * @param <T>             Type of items of the list
+     * @param extractor       List extractor
+     * @param maxItems        Maximum number of items to display
+     * @param renderer        Renderer function for items
+     * @param overflowSummary Renders the number of hidden items, when there are some
+     *
+     * @return This builder
+     *
+     * @throws IllegalArgumentException If the maximum number of items is negative
+     * @see #bindSeq(Function, ItemRenderer)
+     */
+    default <T> LiveTemplateBuilder<D> bindCappedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                     int maxItems,
+                                                     ItemRenderer<? super T> renderer,
+                                                     Function<? super Integer, String> overflowSummary) {
+        if (maxItems < 0) {
+            throw new IllegalArgumentException("Negative number of items " + maxItems);
+        }
+        return bindSeq(d -> ReactfxExtensions.<T>capped(extractor.apply(d), maxItems), renderer)
+            .bind(d -> LiveList.sizeOf(extractor.apply(d)).map(size -> size > maxItems ? overflowSummary.apply(size - maxItems) : ""));
+    }
+
+
+    /**
+     * Binds an observable list of items, of which only the first ones are displayed,
+     * followed by {@code "… and N more"} if some are hidden. See
+     * {@link #bindCappedSeq(Function, int, ItemRenderer, Function)}.
+     *
+     * @param <T>       Type of items of the list
+     * @param extractor List extractor
+     * @param maxItems  Maximum number of items to display
+     * @param renderer  Renderer function for items
+     *
+     * @return This builder
+     *
+     * @throws IllegalArgumentException If the maximum number of items is negative
+     */
+    default <T> LiveTemplateBuilder<D> bindCappedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                     int maxItems,
+                                                     ItemRenderer<? super T> renderer) {
+        return bindCappedSeq(extractor, maxItems, renderer, hidden -> "… and " + hidden + " more");
+    }
+
+
+    /**
+     * Binds a property of the data context that returns an observable list of items,
+     * which are displayed sorted by an observable key. Each item will be mapped to a
+     * string using the specified {@link ItemRenderer}.
+     *
+     * <p>The order of the source list is ignored, and the list doesn't need to be re-sorted
+     * when the key of an item changes. Instead, the position of the item is found by binary
+     * search, and only its text is moved. Items with equal keys are kept in the order they
+     * were inserted. Null keys are sorted last.
+     *
+     * @param <T>        Type of items of the list
+     * @param <K>        Type of the sort keys
+     * @param extractor  List extractor
+     * @param sortKey    Extracts the observable sort key of an item
+     * @param comparator Comparator for the keys
+     * @param renderer   Renderer function for items
+     *
+     * @return This builder
+     *
+     * @see #bindSortedSeq(Function, Function, ItemRenderer)
+     */
+    <T, K> LiveTemplateBuilder<D> bindSortedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                Function<? super T, ? extends ObservableValue<? extends K>> sortKey,
+                                                Comparator<? super K> comparator,
+                                                ItemRenderer<? super T> renderer);
+
+
+    /**
+     * Binds an observable list of items, which are displayed sorted by the natural
+     * order of an observable key. See {@link #bindSortedSeq(Function, Function, Comparator, ItemRenderer)}.
+     *
+     * @param <T>       Type of items of the list
+     * @param <K>       Type of the sort keys
+     * @param extractor List extractor
+     * @param sortKey   Extracts the observable sort key of an item
+     * @param renderer  Renderer function for items
+     *
+     * @return This builder
+     */
+    default <T, K extends Comparable<? super K>> LiveTemplateBuilder<D> bindSortedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                                                      Function<? super T, ? extends ObservableValue<? extends K>> sortKey,
+                                                                                      ItemRenderer<? super T> renderer) {
+        return bindSortedSeq(extractor, sortKey, Comparator.<K>naturalOrder(), renderer);
+    }
+
+
+    /**
+     * Binds a property of the data context that returns an observable list of items,
+     * which are displayed in groups. Items are grouped by the value of an observable key,
+     * and each group is preceded by a header rendered from its key, e.g. {@code "== Group A =="}.
+     *
+     * <p>Groups are maintained incrementally, the list is never regrouped. A group is inserted
+     * when its first item arrives, and removed when its last item leaves. When the key of an
+     * item changes, only the text of the item is moved to its new group. Groups are displayed
+     * in the order they were created, and the items of a group in the order they joined it.
+     * Initially, that's the order of the list.
+     *
+     * @param <T>            Type of items of the list
+     * @param <K>            Type of the group keys
+     * @param extractor      List extractor
+     * @param groupKey       Extracts the observable group key of an item. Keys are compared with {@link Object#equals(Object)}
+     * @param headerRenderer Renderer function for the group headers
+     * @param itemRenderer   Renderer function for items
+     *
+     * @return This builder
+     *
+     * @see #bindSeq(Function, ItemRenderer)
+     */
+    <T, K> LiveTemplateBuilder<D> bindGroupedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                 Function<? super T, ? extends ObservableValue<? extends K>> groupKey,
+                                                 ItemRenderer<? super K> headerRenderer,
+                                                 ItemRenderer<? super T> itemRenderer);
+
+
     /**
      * Binds a property of the data context that returns an observable list of items,
      * that are rendered as sub-templates. The sub template builder inherits the local
@@ -422,6 +668,31 @@ public interface LiveTemplateBuilder<D> {
     }
 
 
+    /**
+     * Binds a property of the data context that returns an observable list of items,
+     * that are rendered as sub-templates. Sub-templates of items that are removed from
+     * the list are parked in the given cache, and are reused if the same item objects
+     * show up again, e.g. when they're moved inside the list. See {@link SubtemplateCache}.
+     *
+     * @param extractor          Value extractor
+     * @param cache              Cache for the sub-templates
+     * @param subTemplateBuilder A function side-effecting on the builder of the sub-template
+     *                           to configure it
+     * @param <T>                Type of items of the list
+     *
+     * @return This builder
+     *
+     * @throws NullPointerException if the cache is null
+     * @see #bindTemplatedSeq(Function, Consumer)
+     * @see ItemRenderer#templated(SubtemplateCache, Consumer)
+     */
+    default <T> LiveTemplateBuilder<D> bindTemplatedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                        SubtemplateCache cache,
+                                                        Consumer<LiveTemplateBuilder<T>> subTemplateBuilder) {
+        return bindSeq(extractor, ItemRenderer.templated(cache, subTemplateBuilder));
+    }
+
+
     /**
      * Binds an observable list, where each item is rendered with {@link Object#toString()}.
      *
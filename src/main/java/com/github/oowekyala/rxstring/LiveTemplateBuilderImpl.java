@@ -2,14 +2,23 @@ package com.github.oowekyala.rxstring;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
 
-import org.reactfx.collection.LiveList;
-import org.reactfx.value.Val;
-
 import com.github.oowekyala.rxstring.BindingExtractor.ConstantBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.GroupedSeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.KeyedSeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.NumberBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.ScopedBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.SeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.SortedSeqBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.ValueBinding;
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.beans.value.ObservableIntegerValue;
+import javafx.beans.value.ObservableLongValue;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.ObservableList;
 
 
@@ -21,8 +30,16 @@ import javafx.collections.ObservableList;
  */
 final class LiveTemplateBuilderImpl<D> implements LiveTemplateBuilder<D> {
 
+    /**
+     * Sub-templates nested deeper than this are not inlined, their plan is resolved
+     * lazily when they're bound. This stops recursive sub-template specifications.
+     */
+    private static final int MAX_INLINE_DEPTH = 4;
+
     private final List<BindingExtractor<D>> myBindings;
     private final InheritableConfig myInheritableConfig;
+    /** Number of sub-templates this builder is nested into. */
+    private int myInlineDepth;
 
 
     private LiveTemplateBuilderImpl(List<BindingExtractor<D>> bindings, InheritableConfig baseConfig) {
@@ -41,8 +58,10 @@ final class LiveTemplateBuilderImpl<D> implements LiveTemplateBuilder<D> {
     }
 
 
-    <T> LiveTemplateBuilder<T> spawnChildWithSameConfig() {
-        return new LiveTemplateBuilderImpl<>(this.myInheritableConfig);
+    <T> LiveTemplateBuilderImpl<T> spawnChildWithSameConfig() {
+        LiveTemplateBuilderImpl<T> child = new LiveTemplateBuilderImpl<>(this.myInheritableConfig);
+        child.myInlineDepth = myInlineDepth + 1;
+        return child;
     }
 
 
@@ -50,14 +69,21 @@ final class LiveTemplateBuilderImpl<D> implements LiveTemplateBuilder<D> {
     public LiveTemplateBuilder<D> append(String string) {
         Objects.requireNonNull(string);
 
-        if (myBindings.size() > 0 && myBindings.get(myBindings.size() - 1) instanceof ConstantBinding) {
+        addBinding(BindingExtractor.makeConstant(string));
+        return this;
+    }
+
+
+    private void addBinding(BindingExtractor<D> binding) {
+        if (binding instanceof ConstantBinding
+            && myBindings.size() > 0
+            && myBindings.get(myBindings.size() - 1) instanceof ConstantBinding) {
             // merge consecutive constants
-            ConstantBinding binding = (ConstantBinding) myBindings.remove(myBindings.size() - 1);
-            myBindings.add(BindingExtractor.makeConstant(binding.constant + string));
+            ConstantBinding prev = (ConstantBinding) myBindings.remove(myBindings.size() - 1);
+            myBindings.add(BindingExtractor.makeConstant(prev.constant + ((ConstantBinding) binding).constant));
         } else {
-            myBindings.add(BindingExtractor.makeConstant(string));
+            myBindings.add(binding);
         }
-        return this;
     }
 
 
@@ -87,21 +113,109 @@ final class LiveTemplateBuilderImpl<D> implements LiveTemplateBuilder<D> {
     }
 
 
+    @Override
+    public <T> LiveTemplateBuilder<D> bind(Function<? super D, ? extends ObservableValue<? extends T>> extractor, ItemRenderer<? super T> renderer) {
+        myBindings.add(new ValueBinding<>(extractor, renderer.escapeWith(getDefaultEscapeFunction()), this));
+        return this;
+    }
+
+
+    @Override
+    public LiveTemplateBuilder<D> bindInt(Function<? super D, ? extends ObservableIntegerValue> extractor) {
+        myBindings.add(new NumberBinding<>(extractor, NumberText.Format.INT));
+        return this;
+    }
+
+
+    @Override
+    public LiveTemplateBuilder<D> bindLong(Function<? super D, ? extends ObservableLongValue> extractor) {
+        myBindings.add(new NumberBinding<>(extractor, NumberText.Format.LONG));
+        return this;
+    }
+
+
+    @Override
+    public LiveTemplateBuilder<D> bindDouble(Function<? super D, ? extends ObservableDoubleValue> extractor) {
+        myBindings.add(new NumberBinding<>(extractor, NumberText.Format.DOUBLE));
+        return this;
+    }
+
+
+    /**
+     * Sub-templates rendered with a non-observable extractor are inlined into
+     * this template, see {@link TemplatePlan}. If the extractor is the identity,
+     * the bindings of the sub-template are bound to the same data context as
+     * this template, and their constants are merged with ours.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> LiveTemplateBuilder<D> render(Function<? super D, ? extends T> extractor, ItemRenderer<T> renderer) {
+        if (!renderer.isTemplated() || myInlineDepth >= MAX_INLINE_DEPTH) {
+            return LiveTemplateBuilder.super.render(extractor, renderer);
+        }
+
+        for (BindingExtractor<?> binding : renderer.getSubtemplatePlan(this).toScopedBindings()) {
+            addBinding(extractor == Function.identity()
+                       ? (BindingExtractor<D>) binding
+                       : ScopedBinding.wrap(extractor, binding));
+        }
+        return this;
+    }
+
+
     @Override
     public <T> LiveTemplateBuilder<D> bindSeq(Function<D, ? extends ObservableList<? extends T>> extractor, SeqRenderer<? super T> renderer) {
-        myBindings.add(extractor.andThen(lst -> renderer.apply(this, LiveList.map(lst, Val::constant)))::apply);
+        // the delimiters are written by the sequence binding itself, the prefix and suffix are constants
+        if (!renderer.getPrefix().isEmpty()) {
+            append(renderer.getPrefix());
+        }
+        myBindings.add(new SeqBinding<>(extractor, renderer.getItemsRenderer(), renderer.getDelimiter(), this));
+        if (!renderer.getSuffix().isEmpty()) {
+            append(renderer.getSuffix());
+        }
+        return this;
+    }
+
+
+    @Override
+    public <T> LiveTemplateBuilder<D> bindSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                               Function<? super T, ?> keyFunction,
+                                               ItemRenderer<? super T> renderer) {
+        myBindings.add(new KeyedSeqBinding<>(extractor, keyFunction, renderer.escapeWith(getDefaultEscapeFunction()), this));
+        return this;
+    }
+
+
+    @Override
+    public <T, K> LiveTemplateBuilder<D> bindSortedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                     Function<? super T, ? extends ObservableValue<? extends K>> sortKey,
+                                                     Comparator<? super K> comparator,
+                                                     ItemRenderer<? super T> renderer) {
+        myBindings.add(new SortedSeqBinding<>(extractor, sortKey, comparator, renderer.escapeWith(getDefaultEscapeFunction()), this));
+        return this;
+    }
+
+
+    @Override
+    public <T, K> LiveTemplateBuilder<D> bindGroupedSeq(Function<D, ? extends ObservableList<? extends T>> extractor,
+                                                      Function<? super T, ? extends ObservableValue<? extends K>> groupKey,
+                                                      ItemRenderer<? super K> headerRenderer,
+                                                      ItemRenderer<? super T> itemRenderer) {
+        Function<String, String> escape = getDefaultEscapeFunction();
+        myBindings.add(new GroupedSeqBinding<>(extractor, groupKey, headerRenderer.escapeWith(escape), itemRenderer.escapeWith(escape), this));
         return this;
     }
 
 
     @Override
     public LiveTemplate<D> toTemplate() {
-        return new LiveTemplateImpl<>(myBindings);
+        return new LiveTemplateImpl<>(toPlan());
     }
 
 
-    static <D> LiveTemplateBuilder<D> newBuilder(List<BindingExtractor<D>> bindings) {
-        return new LiveTemplateBuilderImpl<>(new ArrayList<>(bindings), new InheritableConfig());
+    /** Compiles the current bindings of this builder. */
+    TemplatePlan<D> toPlan() {
+        return TemplatePlan.compile(myBindings);
     }
 
 
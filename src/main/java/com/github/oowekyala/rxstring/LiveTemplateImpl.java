@@ -1,9 +1,14 @@
 package com.github.oowekyala.rxstring;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -30,18 +35,44 @@ final class LiveTemplateImpl<D> implements LiveTemplate<D> {
     private final Var<ReplaceHandler> myInternalReplaceHandlers = Var.newSimpleVar(null);
     private final List<ReplaceHandler> myUserReplaceHandlers = new ArrayList<>();
     private final Var<Boolean> useDiffMatchPatch = Var.newSimpleVar(true);
-    private final List<BindingExtractor<D>> myDataBindings;
+    private final Var<RebindPolicy> myRebindPolicy = Var.newSimpleVar(RebindPolicy.immediate());
+    private final TemplatePlan<D> myPlan;
+    /** Bound template built by {@link #prepareDataContext(Object, Executor, Executor)}, about to be swapped in. */
+    private BoundLiveTemplate<D> myPreparedBound;
+    /** Edit rendered in the background for {@link #myPreparedBound}. */
+    private BoundLiveTemplate.PreparedEdit myPreparedEdit;
+    /**
+     * The last request made through {@link #requestDataContext(Object)}, if it's still pending.
+     * Requests may be made from any thread, and are applied on the apply executor of the rebind
+     * policy.
+     */
+    private final AtomicReference<PendingRequest> myPendingRequest = new AtomicReference<>();
+    /** Incremented from the swap executor too. */
+    private final AtomicLong myElidedRebinds = new AtomicLong();
+    /** Whether a request is being applied. Only used on the thread that sets the data context. */
+    private boolean myIsApplyingRequest;
+    /** Cache in which this template is parked when released, or null. */
+    private SubtemplateCache myCache;
+    /** Renderer that created this template, part of the cache key. */
+    private Object myCacheOwner;
 
 
-    LiveTemplateImpl(List<BindingExtractor<D>> dataBinder) {
-        this.myDataBindings = Collections.unmodifiableList(dataBinder);
+    LiveTemplateImpl(TemplatePlan<D> plan) {
+        this.myPlan = plan;
 
         myDataContext.values().subscribe(newCtx -> {
 
-            if (myCurBound.isPresent() && newCtx != null) {
+            if (!myIsApplyingRequest) {
+                // the data context was set by other means, so pending requests are stale
+                dropPendingRequest();
+            }
+
+            if (myPreparedBound != null && newCtx != null) {
+                swapIn(myPreparedBound);
+            } else if (myCurBound.isPresent() && newCtx != null) {
                 myCurBound.getValue().rebind(newCtx);
             } else if (newCtx != null) {
-                myCurBound.setValue(new BoundLiveTemplate<>(newCtx, this, myDataBindings, myUserReplaceHandlers, myInternalReplaceHandlers));
+                myCurBound.setValue(new BoundLiveTemplate<>(newCtx, this, myPlan, myUserReplaceHandlers, myInternalReplaceHandlers));
             } else {
                 myCurBound.ifPresent(BoundLiveTemplate::unbind);
                 myCurBound.setValue(null);
@@ -52,12 +83,83 @@ final class LiveTemplateImpl<D> implements LiveTemplate<D> {
     }
 
 
+    private void swapIn(BoundLiveTemplate<D> prepared) {
+        BoundLiveTemplate.PreparedEdit edit = myPreparedEdit;
+        myPreparedBound = null;
+        myPreparedEdit = null;
+
+        String previousText = "";
+        if (myCurBound.isPresent()) {
+            previousText = myCurBound.getValue().getValue();
+            myCurBound.getValue().unbindSilently();
+        }
+
+        prepared.attach(myUserReplaceHandlers, myInternalReplaceHandlers, previousText, edit);
+        myCurBound.setValue(prepared);
+    }
+
+
     Subscription addInternalReplaceHandler(ReplaceHandler handler) {
+        if (myCache != null) {
+            // we're in use again
+            myCache.claim(myCacheOwner, getDataContext(), this);
+        }
         myInternalReplaceHandlers.setValue(handler);
         return () -> myInternalReplaceHandlers.setValue(null);
     }
 
 
+    /**
+     * Makes this sub-template be parked in the given cache when it's
+     * {@linkplain #release() released}, instead of being unbound.
+     */
+    void setCache(SubtemplateCache cache, Object owner) {
+        this.myCache = cache;
+        this.myCacheOwner = owner;
+    }
+
+
+    /** Whether this sub-template was created by a cached renderer. */
+    boolean isCached() {
+        return myCache != null;
+    }
+
+
+    /** Whether this sub-template is currently attached to a parent. */
+    boolean isAttached() {
+        return myInternalReplaceHandlers.getValue() != null;
+    }
+
+
+    /**
+     * Returns a new cached sub-template bound to the same data context, for
+     * when this one is already attached to another item.
+     */
+    LiveTemplateImpl<D> copyForCache() {
+        LiveTemplateImpl<D> copy = new LiveTemplateImpl<>(myPlan);
+        copy.setCache(myCache, myCacheOwner);
+        copy.setDataContext(getDataContext());
+        return copy;
+    }
+
+
+    /**
+     * Called when the parent template doesn't use this sub-template anymore.
+     * If there's a cache, the sub-template stays bound and is parked, otherwise
+     * it's unbound.
+     */
+    void release() {
+        myInternalReplaceHandlers.setValue(null);
+
+        if (myCache != null && getDataContext() != null && !myDataContext.isBound()) {
+            myCache.park(myCacheOwner, getDataContext(), this);
+        } else {
+            dataContextProperty().unbind();
+            setDataContext(null);
+        }
+    }
+
+
     @SuppressWarnings("unchecked")
     void rebind(LiveTemplateImpl<?> other/*non null*/) {
         D newCtx = (D) other.getDataContext();
@@ -72,6 +174,126 @@ final class LiveTemplateImpl<D> implements LiveTemplate<D> {
     }
 
 
+    @Override
+    public CompletableFuture<Boolean> prepareDataContext(D context, Executor renderExecutor, Executor swapExecutor) {
+        Objects.requireNonNull(context);
+        D expectedCtx = getDataContext();
+        String previousText = Objects.toString(getValue(), "");
+        boolean useDiffMatchPatch = isUseDiffMatchPatchStrategy();
+
+        return CompletableFuture
+            // only plain text is rendered in the background, nothing is observed
+            .supplyAsync(() -> BoundLiveTemplate.PreparedEdit.render(myPlan, context, previousText, useDiffMatchPatch), renderExecutor)
+            .thenApplyAsync(edit -> {
+                if (getDataContext() != expectedCtx || myDataContext.isBound()) {
+                    // the data context changed in the meantime, so the prepared text is stale
+                    myElidedRebinds.incrementAndGet();
+                    return false;
+                } else if (context == expectedCtx) {
+                    return false;
+                }
+
+                // the new context is observed here, on the thread that owns the template,
+                // the prepared texts are reused where the values didn't change
+                myPreparedBound = new BoundLiveTemplate<>(context, this, myPlan, edit);
+                myPreparedEdit = edit;
+                setDataContext(context);
+                return true;
+            }, swapExecutor);
+    }
+
+
+    @Override
+    public void requestDataContext(D context) {
+        RebindPolicy policy = getRebindPolicy();
+        if (policy.isImmediate()) {
+            dropPendingRequest();
+            setDataContext(context);
+            return;
+        }
+
+        PendingRequest request = new PendingRequest(context);
+        PendingRequest previous = myPendingRequest.getAndSet(request);
+        if (previous != null) {
+            previous.drop();
+        }
+        request.myFuture = policy.schedule(request);
+    }
+
+
+    /** Drops the pending request, if any. */
+    private void dropPendingRequest() {
+        PendingRequest pending = myPendingRequest.getAndSet(null);
+        if (pending != null) {
+            pending.drop();
+        }
+    }
+
+
+    /**
+     * A request made with a latest-wins policy. It's settled exactly once,
+     * either when it's applied or when it's dropped.
+     */
+    private final class PendingRequest implements Runnable {
+
+        private final D myContext;
+        private final AtomicBoolean myIsSettled = new AtomicBoolean();
+        private volatile Future<?> myFuture;
+
+
+        PendingRequest(D context) {
+            this.myContext = context;
+        }
+
+
+        /** Runs on the apply executor. */
+        @Override
+        public void run() {
+            if (!myIsSettled.compareAndSet(false, true)) {
+                // superseded while waiting for the apply executor
+                return;
+            }
+            myPendingRequest.compareAndSet(this, null);
+
+            if (myDataContext.isBound()) {
+                myElidedRebinds.incrementAndGet();
+                return;
+            }
+
+            myIsApplyingRequest = true;
+            try {
+                setDataContext(myContext);
+            } finally {
+                myIsApplyingRequest = false;
+            }
+        }
+
+
+        /** Drops this request, and cancels it if it didn't get to the apply executor. */
+        void drop() {
+            if (myIsSettled.compareAndSet(false, true)) {
+                myElidedRebinds.incrementAndGet();
+                Future<?> future = myFuture;
+                if (future != null) {
+                    future.cancel(false);
+                }
+            }
+        }
+    }
+
+
+    @Override
+    public Var<RebindPolicy> rebindPolicyProperty() {
+        return myRebindPolicy;
+    }
+
+
+    @Override
+    public long getElidedRebindCount() {
+        return myElidedRebinds.get();
+    }
+
+
     @Override
     public Var<Boolean> isUseDiffMatchPatchStrategyProperty() {
         return useDiffMatchPatch;
@@ -121,7 +343,7 @@ final class LiveTemplateImpl<D> implements LiveTemplate<D> {
 
     @Override
     public LiveTemplate<D> copy() {
-        LiveTemplateImpl<D> copy = (LiveTemplateImpl<D>) LiveTemplateBuilderImpl.newBuilder(myDataBindings).toTemplate();
+        LiveTemplateImpl<D> copy = new LiveTemplateImpl<>(myPlan);
         copy.importConfigFrom(this);
         return copy;
     }
@@ -0,0 +1,146 @@
+package com.github.oowekyala.rxstring;
+
+import org.reactfx.Subscription;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.beans.value.ObservableNumberValue;
+
+
+/**
+ * The text of a primitive numeric binding, see {@link LiveTemplateBuilder#bindInt(java.util.function.Function)}.
+ * The value is read as a primitive and formatted into a scratch buffer, so it's never boxed.
+ * If the value is the same as the one that's currently displayed, e.g. because the observable
+ * was invalidated without changing, then nothing is formatted. Otherwise the text is replaced
+ * with the contents of the buffer.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class NumberText implements InvalidationListener, Subscription {
+
+    private final Format myFormat;
+    private final ValIdx myIdx;
+    /** Shared by the numbers of a bound template, only used while formatting. */
+    private final StringBuilder myScratch;
+
+    private ObservableNumberValue myObservable;
+    /** Bits of the value that's displayed, only relevant if {@link #myIsDisplayed}. */
+    private long myBits;
+    private boolean myIsDisplayed;
+
+
+    NumberText(Format format, ValIdx idx, StringBuilder scratch) {
+        this.myFormat = format;
+        this.myIdx = idx;
+        this.myScratch = scratch;
+    }
+
+
+    /** Observes the given value, replacing the current one. A null value displays nothing. */
+    void bindTo(ObservableNumberValue observable) {
+        unsubscribe();
+        myObservable = observable;
+        if (observable == null) {
+            myIsDisplayed = false;
+            myIdx.replaceValue("");
+        } else {
+            observable.addListener(this);
+            update();
+        }
+    }
+
+
+    /**
+     * Like {@link #bindTo(ObservableNumberValue)}, when the range already contains the text
+     * of a value with the given bits. Nothing is formatted unless the value is different.
+     */
+    void bindTo(ObservableNumberValue observable, long displayedBits) {
+        unsubscribe();
+        myObservable = observable;
+        myBits = displayedBits;
+        myIsDisplayed = true;
+        observable.addListener(this);
+        update();
+    }
+
+
+    @Override
+    public void invalidated(Observable observable) {
+        update();
+    }
+
+
+    private void update() {
+        // this revalidates the observable
+        long bits = myFormat.bits(myObservable);
+        if (myIsDisplayed && bits == myBits) {
+            return;
+        }
+
+        myBits = bits;
+        myIsDisplayed = true;
+        myScratch.setLength(0);
+        myFormat.format(myObservable, myScratch);
+        myIdx.replaceValue(myScratch.toString());
+    }
+
+
+    @Override
+    public void unsubscribe() {
+        if (myObservable != null) {
+            myObservable.removeListener(this);
+            myObservable = null;
+        }
+    }
+
+
+    /** How to read and format a value. */
+    enum Format {
+        INT {
+            @Override
+            long bits(ObservableNumberValue value) {
+                return value.intValue();
+            }
+
+
+            @Override
+            void format(ObservableNumberValue value, StringBuilder out) {
+                out.append(value.intValue());
+            }
+        },
+        LONG {
+            @Override
+            long bits(ObservableNumberValue value) {
+                return value.longValue();
+            }
+
+
+            @Override
+            void format(ObservableNumberValue value, StringBuilder out) {
+                out.append(value.longValue());
+            }
+        },
+        DOUBLE {
+            @Override
+            long bits(ObservableNumberValue value) {
+                // all NaNs have the same text, but 0.0 and -0.0 don't
+                return Double.doubleToLongBits(value.doubleValue());
+            }
+
+
+            @Override
+            void format(ObservableNumberValue value, StringBuilder out) {
+                out.append(value.doubleValue());
+            }
+        };
+
+
+        /** Reads the value, as bits that are equal iff the texts are equal. */
+        abstract long bits(ObservableNumberValue value);
+
+
+        /** Appends the text of the value, like {@link String#valueOf(int)} and such. */
+        abstract void format(ObservableNumberValue value, StringBuilder out);
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.reactfx.EventStreams;
+import org.reactfx.Subscription;
+import org.reactfx.value.Val;
+
+import com.github.oowekyala.rxstring.ReactfxExtensions.SequenceListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener.Change;
+import javafx.collections.ObservableList;
+
+
+/**
+ * Base class for the sequences whose elements are placed according to an observable key of
+ * their item, independently of the order of the source list, e.g. a {@link SortedSequence}.
+ * This keeps track of the items of the source list, and of the key of each element. Where the
+ * text of an element goes is up to the subclass.
+ *
+ * @param <T> Type of items
+ * @param <K> Type of keys
+ * @param <E> Type of elements
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+abstract class ObservableKeySequence<T, K, E extends ObservableKeySequence.Entry<K>> implements ItemSequence<T> {
+
+    private final Function<? super T, ? extends ObservableValue<? extends K>> myKeyExtractor;
+    private final Function<T, Val<String>> myRenderer;
+    private final BiFunction<Integer, List<Val<String>>, List<ValIdx>> myIdxFactory;
+    private final BiFunction<Val<String>, ValIdx, Subscription> myBinder;
+    /** Deletes the text ranges of removed elements. */
+    final SequenceListener<?> myListener;
+    /** Elements in the order of the source list. */
+    private final List<E> mySourceOrder = new ArrayList<>();
+
+    private Subscription mySourceSub = Subscription.EMPTY;
+
+
+    ObservableKeySequence(Function<? super T, ? extends ObservableValue<? extends K>> keyExtractor,
+                          Function<T, Val<String>> renderer,
+                          BiFunction<Integer, List<Val<String>>, List<ValIdx>> idxFactory,
+                          BiFunction<Val<String>, ValIdx, Subscription> binder,
+                          SequenceListener<?> listener) {
+        this.myKeyExtractor = keyExtractor;
+        this.myRenderer = renderer;
+        this.myIdxFactory = idxFactory;
+        this.myBinder = binder;
+        this.myListener = listener;
+    }
+
+
+    /** Observes the given list, replacing the current elements. */
+    @Override
+    public final void bindTo(ObservableList<? extends T> source) {
+        unsubscribe();
+        addEntries(0, source);
+        mySourceSub = EventStreams.changesOf(source).subscribe(this::onChange);
+    }
+
+
+    @Override
+    public final void unsubscribe() {
+        mySourceSub.unsubscribe();
+        mySourceSub = Subscription.EMPTY;
+        for (E entry : mySourceOrder) {
+            entry.unsubscribe();
+        }
+        mySourceOrder.clear();
+        myListener.removed(0, clear());
+    }
+
+
+    /** Creates an element with the given key and text, which is not placed yet. */
+    abstract E newEntry(ObservableValue<? extends K> key, Val<String> rendered);
+
+
+    /**
+     * Places the given elements, when there were none. Their text must be inserted in one
+     * block with {@link #newIndices(int, List)}, then each element {@linkplain #bind bound}.
+     */
+    abstract void placeAll(List<E> added);
+
+
+    /**
+     * Places a new element among the others, and returns the index where
+     * its text must be inserted. This may insert other text before it.
+     */
+    abstract int place(E entry);
+
+
+    /** Removes an element, whose subscriptions are already cancelled, and deletes its text. */
+    abstract void remove(E entry);
+
+
+    /** Moves the text of an element whose key has changed. */
+    abstract void onKeyChange(E entry);
+
+
+    /**
+     * Forgets all the elements, whose subscriptions are already cancelled. Returns the number
+     * of text ranges of the sequence, which are then deleted.
+     */
+    abstract int clear();
+
+
+    /** Creates the text ranges of a block of elements starting at the given index, with their current text. */
+    final List<ValIdx> newIndices(int from, List<Val<String>> rendered) {
+        return rendered.isEmpty() ? Collections.emptyList() : myIdxFactory.apply(from, rendered);
+    }
+
+
+    /** Binds the given text to its range, and returns the subscription that unbinds it. */
+    final Subscription bindText(Val<String> text, ValIdx idx) {
+        return myBinder.apply(text, idx);
+    }
+
+
+    /** Binds the text of the element to the given range, and observes its key. */
+    final void bind(E entry, ValIdx idx) {
+        entry.idx = idx;
+        entry.textSub = myBinder.apply(entry.rendered, idx);
+        entry.keySub = EventStreams.changesOf(entry.key).subscribe(ch -> onKeyChange(entry));
+    }
+
+
+    private void onChange(Change<? extends T> ch) {
+        while (ch.next()) {
+            int from = ch.getFrom();
+            if (ch.wasPermutated()) {
+                // the placement doesn't depend on the order of the source
+                List<E> moved = new ArrayList<>(mySourceOrder.subList(from, ch.getTo()));
+                for (int i = from; i < ch.getTo(); i++) {
+                    mySourceOrder.set(ch.getPermutation(i), moved.get(i - from));
+                }
+            } else {
+                if (ch.wasRemoved()) {
+                    List<E> removed = mySourceOrder.subList(from, from + ch.getRemovedSize());
+                    for (E entry : removed) {
+                        entry.unsubscribe();
+                        remove(entry);
+                    }
+                    removed.clear();
+                }
+                if (ch.wasAdded()) {
+                    addEntries(from, ch.getAddedSubList());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Adds elements for the given items. If there were no elements, they're placed
+     * in one block, otherwise each is inserted at its place.
+     */
+    private void addEntries(int from, List<? extends T> items) {
+        boolean wasEmpty = mySourceOrder.isEmpty();
+        List<E> added = new ArrayList<>(items.size());
+        for (T item : items) {
+            added.add(newEntry(myKeyExtractor.apply(item), myRenderer.apply(item)));
+        }
+        mySourceOrder.addAll(from, added);
+
+        if (wasEmpty) {
+            placeAll(added);
+        } else {
+            for (E entry : added) {
+                int pos = place(entry);
+                bind(entry, myIdxFactory.apply(pos, Collections.singletonList(entry.rendered)).get(0));
+            }
+        }
+    }
+
+
+    /** Element of the sequence. */
+    static class Entry<K> implements Subscription {
+
+        final ObservableValue<? extends K> key;
+        final Val<String> rendered;
+        ValIdx idx;
+        Subscription textSub = Subscription.EMPTY;
+        Subscription keySub = Subscription.EMPTY;
+
+
+        Entry(ObservableValue<? extends K> key, Val<String> rendered) {
+            this.key = key;
+            this.rendered = rendered;
+        }
+
+
+        @Override
+        public void unsubscribe() {
+            textSub.unsubscribe();
+            keySub.unsubscribe();
+        }
+    }
+}
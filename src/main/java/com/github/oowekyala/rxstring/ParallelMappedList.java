@@ -0,0 +1,113 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.reactfx.EventStreams;
+import org.reactfx.Subscription;
+import org.reactfx.collection.ListChangeAccumulator;
+import org.reactfx.collection.LiveListBase;
+import org.reactfx.collection.QuasiListModification;
+import org.reactfx.collection.UnmodifiableByDefaultLiveList;
+
+import javafx.collections.ListChangeListener.Change;
+import javafx.collections.ObservableList;
+
+
+/**
+ * A mapped view on a source list, that maps large blocks of elements in parallel.
+ * While it's observed, this view keeps the mapped elements, so that the mapper is
+ * called once per element of the source. When it starts being observed, and when
+ * a large block of elements is added to the source, the new elements are mapped
+ * by a parallel stream, which runs on the common {@link java.util.concurrent.ForkJoinPool}.
+ * The results are then stored and reported on the thread that changed the source.
+ *
+ * <p>The mapper must hence be free of side effects, and must be safe to call from
+ * any thread. When this view is not observed, elements are mapped on the calling
+ * thread each time they're accessed, like with {@link org.reactfx.collection.LiveList#map(ObservableList, Function)}.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class ParallelMappedList<E, F> extends LiveListBase<F> implements UnmodifiableByDefaultLiveList<F> {
+
+    /** Blocks smaller than this are mapped on the calling thread. */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private final ObservableList<? extends E> mySource;
+    private final Function<? super E, ? extends F> myMapper;
+    /** Mapped elements, maintained while this list is observed. */
+    private final List<F> myMapped = new ArrayList<>();
+
+
+    ParallelMappedList(ObservableList<? extends E> source, Function<? super E, ? extends F> mapper) {
+        this.mySource = source;
+        this.myMapper = mapper;
+    }
+
+
+    @Override
+    protected Subscription observeInputs() {
+        myMapped.clear();
+        myMapped.addAll(mapAll(mySource, myMapper));
+        return EventStreams.changesOf(mySource).subscribe(this::sourceChanged);
+    }
+
+
+    private void sourceChanged(Change<? extends E> ch) {
+        ListChangeAccumulator<F> acc = new ListChangeAccumulator<>();
+        while (ch.next()) {
+            int from = ch.getFrom();
+            if (ch.wasPermutated()) {
+                List<F> moved = myMapped.subList(from, ch.getTo());
+                List<F> removed = new ArrayList<>(moved);
+                for (int i = from; i < ch.getTo(); i++) {
+                    myMapped.set(ch.getPermutation(i), removed.get(i - from));
+                }
+                acc.add(QuasiListModification.create(from, removed, removed.size()));
+            } else if (ch.wasRemoved() || ch.wasAdded()) {
+                List<F> changedRange = myMapped.subList(from, from + ch.getRemovedSize());
+                List<F> removed = changedRange.isEmpty() ? Collections.emptyList() : new ArrayList<>(changedRange);
+                changedRange.clear();
+                changedRange.addAll(mapAll(ch.getAddedSubList(), myMapper));
+                acc.add(QuasiListModification.create(from, removed, ch.getAddedSize()));
+            }
+        }
+
+        if (!acc.isEmpty()) {
+            notifyObservers(acc.fetch());
+        }
+    }
+
+
+    /** Maps the given elements, in parallel if there are enough of them. */
+    static <E, F> List<F> mapAll(List<? extends E> elements, Function<? super E, ? extends F> mapper) {
+        if (elements.size() < PARALLEL_THRESHOLD) {
+            List<F> result = new ArrayList<>(elements.size());
+            for (E e : elements) {
+                result.add(mapper.apply(e));
+            }
+            return result;
+        }
+
+        // copy first, the source may be a view that doesn't split well, or isn't thread-safe
+        return new ArrayList<E>(elements).parallelStream()
+                                         .<F>map(mapper)
+                                         .collect(Collectors.toList());
+    }
+
+
+    @Override
+    public int size() {
+        return mySource.size();
+    }
+
+
+    @Override
+    public F get(int index) {
+        return isObservingInputs() ? myMapped.get(index) : myMapper.apply(mySource.get(index));
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import javafx.collections.ListChangeListener.Change;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+
+
+/**
+ * A mapped view on a source list, which reports the permutations of the source as
+ * permutations, instead of replacing the permuted range like {@link org.reactfx.collection.LiveList#map(ObservableList, Function)}.
+ * The mapped elements are kept, so that the mapper is called once per element of
+ * the source, and sorting the source only moves them.
+ *
+ * <p>Like other {@link TransformationList}s, this view listens to its source through
+ * a weak listener for as long as it's reachable. Elements are mapped when they're first
+ * accessed, unless the mapper is free of side effects: then, large blocks of elements are
+ * mapped in parallel when they're added while this view is observed, see {@link ParallelMappedList}.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class PermutedMappedList<E, F> extends TransformationList<F, E> {
+
+    private final Function<? super E, ? extends F> myMapper;
+    /** Whether large blocks may be mapped in parallel. */
+    private final boolean myIsParallel;
+    /** Mapped elements, in the order of the source. Null if the element hasn't been mapped yet. */
+    private final List<F> myMapped;
+
+
+    /**
+     * Creates a view. The current elements of the source are mapped right away if the
+     * mapper may run in parallel.
+     *
+     * @param source     Source list
+     * @param mapper     Mapper, which mustn't return null
+     * @param isParallel Whether the mapper is free of side effects and thread-safe
+     */
+    PermutedMappedList(ObservableList<? extends E> source, Function<? super E, ? extends F> mapper, boolean isParallel) {
+        super(source);
+        this.myMapper = mapper;
+        this.myIsParallel = isParallel;
+        this.myMapped = new ArrayList<>(mapAll(source, true));
+    }
+
+
+    @Override
+    protected void sourceChanged(Change<? extends E> ch) {
+        beginChange();
+        while (ch.next()) {
+            int from = ch.getFrom();
+            if (ch.wasPermutated()) {
+                List<F> moved = new ArrayList<>(myMapped.subList(from, ch.getTo()));
+                int[] perm = new int[moved.size()];
+                for (int i = from; i < ch.getTo(); i++) {
+                    perm[i - from] = ch.getPermutation(i);
+                    myMapped.set(ch.getPermutation(i), moved.get(i - from));
+                }
+                nextPermutation(from, ch.getTo(), perm);
+            } else if (ch.wasRemoved() || ch.wasAdded()) {
+                List<F> changedRange = myMapped.subList(from, from + ch.getRemovedSize());
+                List<F> removed = changedRange.isEmpty() ? Collections.emptyList() : new ArrayList<>(changedRange);
+                changedRange.clear();
+                // nobody will read the new elements if the view isn't observed
+                changedRange.addAll(mapAll(ch.getAddedSubList(), hasListeners()));
+                nextReplace(from, ch.getTo(), removed);
+            }
+        }
+        endChange();
+    }
+
+
+    /** Maps the given elements in advance if possible, otherwise they're mapped when accessed. */
+    private List<F> mapAll(List<? extends E> elements, boolean isObserved) {
+        return myIsParallel && isObserved
+               ? ParallelMappedList.mapAll(elements, myMapper)
+               : Collections.nCopies(elements.size(), null);
+    }
+
+
+    @Override
+    public int getSourceIndex(int index) {
+        return index;
+    }
+
+
+    // not an override before JavaFX 9
+    public int getViewIndex(int index) {
+        return index;
+    }
+
+
+    @Override
+    public int size() {
+        return getSource().size();
+    }
+
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public F get(int index) {
+        F mapped = myMapped.get(index);
+        if (mapped == null) {
+            mapped = myMapper.apply((E) getSource().get(index));
+            myMapped.set(index, mapped);
+        }
+        return mapped;
+    }
+}
@@ -0,0 +1,232 @@
+package com.github.oowekyala.rxstring;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+
+/**
+ * Reads a named property of an object. A property {@code name} is read from the first of
+ * the following public members: a method {@code nameProperty()}, {@code getName()}, {@code isName()},
+ * {@code name()}, or a field {@code name}.
+ *
+ * <p>Accessors are resolved once per class and name, and cached in a {@link ClassValue}, so
+ * that the cache doesn't keep classes from being unloaded. Reading a property is then a call
+ * to a {@link MethodHandle} stored in the accessor. Since the handle is not a constant, the
+ * JIT doesn't inline it, and the call is an indirect one. That's still much cheaper than a
+ * reflective invocation, which boxes its arguments and checks access every time.
+ *
+ * <p>Members that can't be made accessible, e.g. those of a non-public class in a module
+ * that isn't open to this library, are looked up on the public supertypes of the class
+ * instead. If none declares them, the property is not found.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class PropertyAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<ConcurrentMap<String, Optional<PropertyAccessor>>> ACCESSORS =
+        new ClassValue<ConcurrentMap<String, Optional<PropertyAccessor>>>() {
+            @Override
+            protected ConcurrentMap<String, Optional<PropertyAccessor>> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private final Class<?> myOwner;
+    private final String myName;
+    private final Class<?> myType;
+    /** Has type (Object)Object. */
+    private final MethodHandle myGetter;
+
+
+    private PropertyAccessor(Class<?> owner, String name, Class<?> type, MethodHandle getter) {
+        this.myOwner = owner;
+        this.myName = name;
+        this.myType = type;
+        this.myGetter = getter.asType(GETTER_TYPE);
+    }
+
+
+    /** Declared type of the property. */
+    Class<?> getType() {
+        return myType;
+    }
+
+
+    /** Reads the property on the given object, which must be an instance of the class it was found on. */
+    Object get(Object target) {
+        try {
+            return (Object) myGetter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot read property '" + myName + "'", t);
+        }
+    }
+
+
+    /**
+     * Returns a function that reads the given property on its argument. The accessor
+     * of the last class it was applied on is kept, so that the function costs a single
+     * type check and a direct call when applied to objects of the same class.
+     *
+     * @param name         Name of the property
+     * @param requiredType Type the declared type of the property must be a subtype of
+     *
+     * @throws IllegalArgumentException When applied, if the class of the argument has no
+     *                                  such property, or it doesn't have the required type
+     */
+    static Function<Object, Object> getter(String name, Class<?> requiredType) {
+        return new Function<Object, Object>() {
+            // accessors are immutable, so racing on this is harmless
+            private PropertyAccessor myLast;
+
+
+            @Override
+            public Object apply(Object target) {
+                PropertyAccessor accessor = myLast;
+                if (accessor == null || accessor.myOwner != target.getClass()) {
+                    accessor = of(target, name);
+                    if (!requiredType.isAssignableFrom(accessor.myType)) {
+                        throw new IllegalArgumentException("Property '" + name + "' of " + target.getClass().getName()
+                                                               + " is not a " + requiredType.getSimpleName());
+                    }
+                    myLast = accessor;
+                }
+                return accessor.get(target);
+            }
+        };
+    }
+
+
+    /**
+     * Returns the accessor for the given property of the class of the target.
+     *
+     * @throws IllegalArgumentException if the class has no such property
+     */
+    static PropertyAccessor of(Object target, String name) {
+        PropertyAccessor accessor = find(target.getClass(), name);
+        if (accessor == null) {
+            throw new IllegalArgumentException("Unknown property '" + name + "' of " + target.getClass().getName());
+        }
+        return accessor;
+    }
+
+
+    /** Returns the accessor for the given property of the given class, or null if there is none. */
+    static PropertyAccessor find(Class<?> type, String name) {
+        return ACCESSORS.get(type).computeIfAbsent(name, n -> Optional.ofNullable(resolve(type, n))).orElse(null);
+    }
+
+
+    private static PropertyAccessor resolve(Class<?> type, String name) {
+        if (name.isEmpty()) {
+            return null;
+        }
+
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String methodName : new String[] {name + "Property", "get" + capitalized, "is" + capitalized, name}) {
+            try {
+                Method method = type.getMethod(methodName);
+                if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class) {
+                    MethodHandle handle = unreflect(method);
+                    if (handle == null) {
+                        handle = unreflectInSupertypes(type, methodName);
+                    }
+                    if (handle != null) {
+                        return new PropertyAccessor(type, name, method.getReturnType(), handle);
+                    }
+                }
+            } catch (NoSuchMethodException ignored) {
+                // try the next one
+            }
+        }
+
+        try {
+            Field field = type.getField(name);
+            if (!Modifier.isStatic(field.getModifiers())) {
+                MethodHandle handle = unreflectGetter(field);
+                if (handle != null) {
+                    return new PropertyAccessor(type, name, field.getType(), handle);
+                }
+            }
+        } catch (NoSuchFieldException ignored) {
+            // not found
+        }
+        return null;
+    }
+
+
+    /** Returns a handle for the given public method, or null if it's not accessible. */
+    private static MethodHandle unreflect(Method method) {
+        trySetAccessible(method);
+        try {
+            return MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+
+    /** Returns a getter for the given public field, or null if it's not accessible. */
+    private static MethodHandle unreflectGetter(Field field) {
+        trySetAccessible(field);
+        try {
+            return MethodHandles.lookup().unreflectGetter(field);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+
+    /** Public members of non-public classes need this, but it may be refused. */
+    private static void trySetAccessible(AccessibleObject member) {
+        try {
+            member.setAccessible(true);
+        } catch (RuntimeException ignored) {
+            // InaccessibleObjectException since Java 9, or SecurityException
+        }
+    }
+
+
+    /**
+     * Returns a handle for the method with the given name, declared by a public
+     * supertype of the given class, or null if there is none that's accessible.
+     */
+    private static MethodHandle unreflectInSupertypes(Class<?> type, String methodName) {
+        Deque<Class<?>> todo = new ArrayDeque<>();
+        todo.add(type);
+        while (!todo.isEmpty()) {
+            Class<?> supertype = todo.poll();
+            if (supertype != type && Modifier.isPublic(supertype.getModifiers())) {
+                try {
+                    MethodHandle handle = unreflect(supertype.getMethod(methodName));
+                    if (handle != null) {
+                        return handle;
+                    }
+                } catch (NoSuchMethodException ignored) {
+                    // its subtypes declare it
+                }
+            }
+            if (supertype.getSuperclass() != null) {
+                todo.add(supertype.getSuperclass());
+            }
+            todo.addAll(Arrays.asList(supertype.getInterfaces()));
+        }
+        return null;
+    }
+}
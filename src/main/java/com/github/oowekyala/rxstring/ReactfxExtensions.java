@@ -1,11 +1,8 @@
 package com.github.oowekyala.rxstring;
 
-import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
-import java.util.WeakHashMap;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -16,6 +13,7 @@ import org.reactfx.collection.LiveList;
 import org.reactfx.value.Val;
 
 import javafx.beans.value.ObservableValue;
+import javafx.collections.ListChangeListener.Change;
 import javafx.collections.ObservableList;
 
 
@@ -39,48 +37,17 @@ public final class ReactfxExtensions {
     }
 
 
-    // this breaks laziness
-    static <T, R> Val<R> mapPreserveConst(Val<? extends T> val, Function<? super T, ? extends R> f) {
-        return !isConst(val) ? val.map(f)
-                             : val.getValue() == null ? Val.constant(null)
-                                                      : Val.constant(f.apply(val.getValue()));
-    }
-
-
-    static <T, R> Val<R> flatMapPreserveConst(ObservableValue<T> val,
-                                              Function<? super T, ? extends ObservableValue<R>> f) {
-        return !isConst(val) ? Val.flatMap(val, f)
-                             : val.getValue() == null ? Val.constant(null)
-                                                      : Val.constant(f.apply(val.getValue()).getValue());
-    }
-
-
     /**
-     * A mapped view that remembers already computed elements. The function
-     * should be pure.
-     *
-     * @param source Source collection
-     * @param f      Mapper
-     * @param <E>    Source elt type
-     * @param <F>    Target elt type
+     * Maps the value like {@link Val#map(Function)}, but a constant is mapped to
+     * a {@link LazyConstVal}, which is still constant. The function is only
+     * applied when the value is read.
      */
-    static <E, F> List<F> lazyMappedView(List<? extends E> source, Function<? super E, ? extends F> f) {
-        return new AbstractList<F>() {
-
-            private Map<E, F> cache = new WeakHashMap<>();
-
-
-            @Override
-            public F get(int index) {
-                return cache.computeIfAbsent(source.get(index), f);
-            }
-
-
-            @Override
-            public int size() {
-                return source.size();
-            }
-        };
+    static <T, R> Val<R> mapPreserveConst(Val<? extends T> val, Function<? super T, ? extends R> f) {
+        return !isConst(val) ? val.map(f)
+                             : new LazyConstVal<>(() -> {
+                                 T t = val.getValue();
+                                 return t == null ? null : f.apply(t);
+                             });
     }
 
 
@@ -112,16 +79,13 @@ public final class ReactfxExtensions {
         Subscription lstSub = EventStreams.changesOf(elems).subscribe(ch -> {
             while (ch.next()) {
                 if (ch.wasPermutated()) {
-                    Subscription left = elemSubs.get(ch.getFrom());
-                    Subscription right = elemSubs.set(ch.getTo(), left);
-                    elemSubs.set(ch.getFrom(), right);
+                    permute(elemSubs, ch);
                 } else {
                     if (ch.wasRemoved()) {
                         // oldList[from : from + removed.size] === removed
-                        int from = ch.getFrom();
-                        for (T ignored : ch.getRemoved()) {
-                            elemSubs.remove(from).unsubscribe();
-                        }
+                        List<Subscription> range = elemSubs.subList(ch.getFrom(), ch.getFrom() + ch.getRemovedSize());
+                        range.forEach(Subscription::unsubscribe);
+                        range.clear();
                     }
                     if (ch.wasAdded()) {
                         // newList[from : to] === addedSubList
@@ -159,19 +123,28 @@ public final class ReactfxExtensions {
     public static <T> RebindSubscription<ObservableList<T>> dynamicRecombine(ObservableList<? extends T> elems,
                                                                              // prev elt or null, new elt, index -> sub
                                                                              BiFunction<? super T, Integer, ? extends RebindSubscription<T>> f) {
+        return dynamicRecombine(elems, f, new SequenceListener<T>() {});
+    }
+
+
+    /**
+     * Like {@link #dynamicRecombine(ObservableList, BiFunction)}, but the given listener is
+     * notified of structural changes, after the element subscriptions have been updated.
+     * This allows updating whatever the subscriptions are bound to in bulk.
+     */
+    static <T> RebindSubscription<ObservableList<T>> dynamicRecombine(ObservableList<? extends T> elems,
+                                                                      BiFunction<? super T, Integer, ? extends RebindSubscription<T>> f,
+                                                                      SequenceListener<T> listener) {
 
         List<RebindSubscription<T>> elemSubs = new ArrayList<>(elems.size());
 
-        for (int i = 0, j = 0; i < elems.size(); i++, j++) {
-            elemSubs.add(f.apply(elems.get(i), i));
-        }
+        addRange(elemSubs, 0, elems, f, listener);
 
         Subscription lstSub = EventStreams.changesOf(elems).subscribe(ch -> {
             while (ch.next()) {
                 if (ch.wasPermutated()) {
-                    RebindSubscription<T> left = elemSubs.get(ch.getFrom());
-                    RebindSubscription<T> right = elemSubs.set(ch.getTo(), left);
-                    elemSubs.set(ch.getFrom(), right);
+                    permute(elemSubs, ch);
+                    listener.permuted(ch);
                 } else {
                     List<? extends T> removed = ch.getRemoved();
                     int addedSize = ch.getAddedSize();
@@ -179,60 +152,94 @@ public final class ReactfxExtensions {
 
                     if (addedSize < removed.size()) {
                         // oldList[from : from + removed.size] === removed
-                        for (int i = addedSize; i < removed.size(); i++) {
-                            // unsubscribe only those removed elements that don't have a matching added element
-                            elemSubs.remove(from + addedSize).unsubscribe();
-                        }
+                        // unsubscribe only those removed elements that don't have a matching added element
+                        removeRange(elemSubs, from + addedSize, from + removed.size(), listener);
                     }
 
                     // newList[from : to] === addedSubList
-                    int removedIdx = 0;
-                    int i = from;
-                    for (T added : ch.getAddedSubList()) {
-                        T prev = removedIdx < removed.size() ? removed.get(removedIdx) : null;
-
-                        if (prev != null) {
-                            elemSubs.set(i, elemSubs.get(i).rebind(added));
-                        } else {
-                            elemSubs.add(i, f.apply(added, i));
-                        }
-                        i++;
-                        removedIdx++;
+                    // removed elements are rebound to the added element at the same position
+                    List<? extends T> added = ch.getAddedSubList();
+                    int rebound = Math.min(addedSize, removed.size());
+                    for (int i = 0; i < rebound; i++) {
+                        elemSubs.set(from + i, elemSubs.get(from + i).rebind(added.get(i)));
+                    }
+
+                    if (addedSize > rebound) {
+                        addRange(elemSubs, from + rebound, added.subList(rebound, addedSize), f, listener);
                     }
                 }
             }
         });
 
-        return rebindSub(elemSubs, f, lstSub);
+        return rebindSub(elemSubs, f, lstSub, listener);
+    }
+
+
+    /** Subscribes to a block of added elements, in one pass if the listener supports it. */
+    private static <T> void addRange(List<RebindSubscription<T>> elemSubs,
+                                     int from,
+                                     List<? extends T> added,
+                                     BiFunction<? super T, Integer, ? extends RebindSubscription<T>> f,
+                                     SequenceListener<T> listener) {
+        if (added.isEmpty()) {
+            return;
+        }
+
+        List<RebindSubscription<T>> subs = listener.added(from, added);
+        if (subs == null) {
+            subs = new ArrayList<>(added.size());
+            for (int i = 0; i < added.size(); i++) {
+                subs.add(f.apply(added.get(i), from + i));
+            }
+        }
+        elemSubs.addAll(from, subs);
+    }
+
+
+    /** Unsubscribes a range of elements, and removes them in one pass. */
+    private static <S extends Subscription> void removeRange(List<S> elemSubs, int from, int to, SequenceListener<?> listener) {
+        List<S> range = elemSubs.subList(from, to);
+        range.forEach(Subscription::unsubscribe);
+        range.clear();
+        listener.removed(from, to);
+    }
+
+
+    /** Reorders the subscriptions of a list according to a permutation change. */
+    private static <S> void permute(List<S> elemSubs, Change<?> ch) {
+        List<S> moved = new ArrayList<>(elemSubs.subList(ch.getFrom(), ch.getTo()));
+        for (int i = ch.getFrom(); i < ch.getTo(); i++) {
+            elemSubs.set(ch.getPermutation(i), moved.get(i - ch.getFrom()));
+        }
     }
 
 
     // helper for dynamicRecombine
     private static <T> RebindSubscription<ObservableList<T>> rebindSub(List<RebindSubscription<T>> elemSubs,
                                                                        BiFunction<? super T, Integer, ? extends RebindSubscription<T>> f,
-                                                                       Subscription lstSub) {
+                                                                       Subscription lstSub,
+                                                                       SequenceListener<T> listener) {
         return RebindSubscription.make(() -> {
             lstSub.unsubscribe();
             elemSubs.forEach(Subscription::unsubscribe);
         }, newElems -> {
 
-            for (int i = 0; i < newElems.size(); i++) {
-                if (i < elemSubs.size()) {
-                    // this one has a corresponding existing element
-                    elemSubs.set(i, elemSubs.get(i).rebind(newElems.get(i)));
-                } else {
-                    // new element
-                    elemSubs.add(f.apply(newElems.get(i), i));
-                }
+            int rebound = Math.min(newElems.size(), elemSubs.size());
+            for (int i = 0; i < rebound; i++) {
+                // this one has a corresponding existing element
+                elemSubs.set(i, elemSubs.get(i).rebind(newElems.get(i)));
             }
 
+            // new elements
+            addRange(elemSubs, rebound, newElems.subList(rebound, newElems.size()), f, listener);
+
             // those older elements have no corresponding new element
             // remove them
-            for (int i = newElems.size(); i < elemSubs.size(); i++) {
-                elemSubs.get(i).unsubscribe();
+            if (newElems.size() < elemSubs.size()) {
+                removeRange(elemSubs, newElems.size(), elemSubs.size(), listener);
             }
 
-            return rebindSub(elemSubs, f, lstSub);
+            return rebindSub(elemSubs, f, lstSub, listener);
         });
     }
 
@@ -282,6 +289,74 @@ public final class ReactfxExtensions {
     }
 
 
+    /**
+     * Returns a view on the first elements of the source list, up to the given size.
+     * Changes of the source past that size are not reported. When elements are added
+     * or removed before the limit, elements are respectively pushed out of the view or
+     * pulled into it. E.g. with a maximum size of 2 and a source [A,B,C], removing A
+     * fires a change replacing [A,B] with [B,C].
+     *
+     * @param source  Source list
+     * @param maxSize Maximum size of the view
+     *
+     * @throws IllegalArgumentException If the maximum size is negative
+     */
+    public static <E> LiveList<E> capped(ObservableList<? extends E> source, int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Negative size " + maxSize);
+        }
+        return new CappedListView<>(source, maxSize);
+    }
+
+
+    /**
+     * Maps the elements of the source list like {@link LiveList#map(ObservableList, Function)},
+     * but maps large blocks of elements in parallel on the common {@link java.util.concurrent.ForkJoinPool}.
+     * That's the case for the whole list when the view starts being observed, and for
+     * large blocks of added elements. Mapped elements are kept while the view is observed,
+     * so the mapper is called once per element. Changes are still reported on the thread
+     * that changed the source.
+     *
+     * @param source Source list
+     * @param mapper Mapper, which must be free of side effects and thread-safe
+     */
+    public static <E, F> LiveList<F> parallelMap(ObservableList<? extends E> source, Function<? super E, ? extends F> mapper) {
+        return new ParallelMappedList<>(source, mapper);
+    }
+
+
+    /**
+     * Listens to the structural changes of a list observed with {@link #dynamicRecombine(ObservableList, BiFunction, SequenceListener)}.
+     *
+     * @param <T> Type of elements
+     */
+    interface SequenceListener<T> {
+
+        /**
+         * Called when a block of elements is added, to subscribe to all of them at once.
+         * Returns null to subscribe to them one by one with the element function instead.
+         *
+         * @param from  Index of the first added element
+         * @param added Added elements
+         */
+        default List<RebindSubscription<T>> added(int from, List<? extends T> added) {
+            return null;
+        }
+
+
+        /** Called after the subscriptions of a permuted range were reordered. */
+        default void permuted(Change<?> ch) {
+            // do nothing
+        }
+
+
+        /** Called after the subscriptions of the elements in the given range were unsubscribed and removed. */
+        default void removed(int from, int to) {
+            // do nothing
+        }
+    }
+
+
     /**
      * A subscription that has two ways of unsubscribing: one giving a chance
      * to replace an existing underlying data source (rebind), and one deleting
@@ -0,0 +1,114 @@
+package com.github.oowekyala.rxstring;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+
+
+/**
+ * Specifies how a {@link LiveTemplate} handles the data context changes requested
+ * through {@link LiveTemplate#requestDataContext(Object)}. When data context changes
+ * are requested in rapid succession (e.g. while the user holds an arrow key in a tree
+ * view), rebinding the template for each of them is wasted work. A {@linkplain #latestWins(Duration)
+ * latest-wins} policy only applies the most recent request, and drops the stale ones.
+ *
+ * @author Clément Fournier
+ * @see LiveTemplate#rebindPolicyProperty()
+ * @since 1.1
+ */
+public final class RebindPolicy {
+
+    private static final RebindPolicy IMMEDIATE = new RebindPolicy(Duration.ZERO, null, null);
+
+    private final Duration myDelay;
+    private final ScheduledExecutorService myScheduler;
+    private final Executor myApplyExecutor;
+
+
+    private RebindPolicy(Duration delay, ScheduledExecutorService scheduler, Executor applyExecutor) {
+        this.myDelay = delay;
+        this.myScheduler = scheduler;
+        this.myApplyExecutor = applyExecutor;
+    }
+
+
+    /** Returns true if requests are applied immediately, on the calling thread. */
+    boolean isImmediate() {
+        return myScheduler == null;
+    }
+
+
+    /**
+     * Schedules the given task to run on the apply executor after the delay.
+     * Only valid if this policy is not {@linkplain #isImmediate() immediate}.
+     */
+    ScheduledFuture<?> schedule(Runnable task) {
+        return myScheduler.schedule(() -> myApplyExecutor.execute(task), myDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+
+    /**
+     * The default policy. Every request is applied immediately, as if
+     * {@link LiveTemplate#setDataContext(Object)} had been called.
+     */
+    public static RebindPolicy immediate() {
+        return IMMEDIATE;
+    }
+
+
+    /**
+     * A latest-wins policy that applies requests on the JavaFX application
+     * thread. See {@link #latestWins(Duration, ScheduledExecutorService, Executor)}.
+     *
+     * @param delay Delay during which a request may be superseded by a more recent one
+     *
+     * @return A latest-wins policy
+     *
+     * @throws NullPointerException     if the delay is null
+     * @throws IllegalArgumentException if the delay is negative
+     */
+    public static RebindPolicy latestWins(Duration delay) {
+        return latestWins(delay, SchedulerHolder.SCHEDULER, Platform::runLater);
+    }
+
+
+    /**
+     * A latest-wins policy. Each request is delayed by the given duration, after
+     * which it is handed to the apply executor. If a more recent request is made
+     * before the stale one is applied, the stale one is dropped. With a zero delay,
+     * requests are still coalesced if several are made before the apply executor
+     * gets to run them.
+     *
+     * @param delay         Delay during which a request may be superseded by a more recent one
+     * @param scheduler     Scheduler used to wait for the delay
+     * @param applyExecutor Executor on which the data context is set, typically
+     *                      the JavaFX application thread
+     *
+     * @return A latest-wins policy
+     *
+     * @throws NullPointerException     if any parameter is null
+     * @throws IllegalArgumentException if the delay is negative
+     */
+    public static RebindPolicy latestWins(Duration delay, ScheduledExecutorService scheduler, Executor applyExecutor) {
+        if (delay.isNegative()) {
+            throw new IllegalArgumentException("Negative delay " + delay);
+        }
+        return new RebindPolicy(delay, Objects.requireNonNull(scheduler), Objects.requireNonNull(applyExecutor));
+    }
+
+
+    private static final class SchedulerHolder {
+
+        static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "live-template-rebind-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
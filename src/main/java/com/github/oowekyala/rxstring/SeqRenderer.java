@@ -1,5 +1,7 @@
 package com.github.oowekyala.rxstring;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -19,16 +21,47 @@ public class SeqRenderer<T> implements BiFunction<LiveTemplateBuilder<?>, Observ
 
 
     private final BiFunction<? super LiveTemplateBuilder<?>, ? super ObservableList<? extends ObservableValue<? extends T>>, ? extends LiveList<Val<String>>> myFun;
+    /** Renderer for the items without the delimiters, this if there are none. */
+    private final SeqRenderer<T> myItems;
+    private final String myPrefix;
+    private final String mySuffix;
+    private final String myDelimiter;
+    /** Whether the rendered elements may be constants, which are then filtered if their text is empty. */
+    private final boolean myRendersConstants;
+    /** Renderer of each item, null if the items are rendered by an arbitrary function. */
+    private final ItemRenderer<? super T> myItemRenderer;
+
+
+    private SeqRenderer(BiFunction<? super LiveTemplateBuilder<?>, ? super ObservableList<? extends ObservableValue<? extends T>>, ? extends LiveList<Val<String>>> myFun,
+                        boolean rendersConstants,
+                        ItemRenderer<? super T> itemRenderer) {
+        this.myFun = myFun;
+        this.myItems = this;
+        this.myPrefix = "";
+        this.mySuffix = "";
+        this.myDelimiter = "";
+        this.myRendersConstants = rendersConstants;
+        this.myItemRenderer = itemRenderer;
+    }
 
 
-    private SeqRenderer(BiFunction<? super LiveTemplateBuilder<?>, ? super ObservableList<? extends ObservableValue<? extends T>>, ? extends LiveList<Val<String>>> myFun) {
-        this.myFun = myFun;
+    private SeqRenderer(SeqRenderer<T> items, String prefix, String suffix, String delim) {
+        this.myFun = (ctx, obsList) -> {
+            LiveList<Val<String>> base = items.apply(ctx, obsList);
+            return ReactfxExtensions.asDelimited(base, Val.constant(delim), Val.constant(prefix), Val.constant(suffix));
+        };
+        this.myItems = items;
+        this.myPrefix = prefix;
+        this.mySuffix = suffix;
+        this.myDelimiter = delim;
+        this.myRendersConstants = true;
+        this.myItemRenderer = items.myItemRenderer;
     }
 
 
     /** Doesn't use the context. */
     private SeqRenderer(Function<? super ObservableList<? extends ObservableValue<? extends T>>, ? extends LiveList<Val<String>>> fun) {
-        this((ctx, lst) -> fun.apply(lst));
+        this((ctx, lst) -> fun.apply(lst), true, null);
     }
 
 
@@ -38,11 +71,83 @@ public class SeqRenderer<T> implements BiFunction<LiveTemplateBuilder<?>, Observ
     }
 
 
+    /**
+     * Renders the given items. If they're rendered by an item renderer, the returned
+     * view keeps the permutations of the items, so that sorting them moves their texts
+     * instead of rendering them again. Otherwise, the items are wrapped into constants
+     * and passed to {@link #apply(LiveTemplateBuilder, ObservableList)}.
+     *
+     * @param context Builder of the enclosing template
+     * @param items   Items to render
+     */
+    ObservableList<Val<String>> renderItems(LiveTemplateBuilder<?> context, ObservableList<? extends T> items) {
+        if (myItemRenderer == null || myItems != this) {
+            return apply(context, LiveList.map(items, Val::constant));
+        }
+        return new PermutedMappedList<>(items, t -> myItemRenderer.apply(context, Val.constant(t)), myItemRenderer.isPure());
+    }
+
+
     private SeqRenderer<T> delimited(String prefix, String suffix, String delim) {
-        return new SeqRenderer<>((ctx, obsList) -> {
-            LiveList<Val<String>> base = this.apply(ctx, obsList);
-            return ReactfxExtensions.asDelimited(base, Val.constant(delim), Val.constant(prefix), Val.constant(suffix));
-        });
+        return new SeqRenderer<>(this, prefix, suffix, delim);
+    }
+
+
+    /**
+     * Returns the renderer for the items, without delimiters, prefix and suffix.
+     * Sequence bindings write those as plain text, instead of binding them like
+     * items.
+     */
+    SeqRenderer<T> getItemsRenderer() {
+        return myItems;
+    }
+
+
+    /**
+     * Returns true if some of the rendered elements may be constants.
+     * Otherwise, there's no need to filter out empty constants.
+     */
+    boolean rendersConstants() {
+        return myRendersConstants;
+    }
+
+
+    /**
+     * Renders each of the given items as plain text, see {@link ItemRenderer#snapshot(LiveTemplateBuilder, Object)}.
+     * Returns null if the items are not rendered by an item renderer, or if one of them can't
+     * be rendered without binding it.
+     *
+     * @param parent Builder of the enclosing template
+     * @param items  Items to render
+     */
+    List<String> snapshot(LiveTemplateBuilder<?> parent, List<? extends T> items) {
+        if (myItemRenderer == null) {
+            return null;
+        }
+        List<String> texts = new ArrayList<>(items.size());
+        for (T item : items) {
+            String text = myItemRenderer.snapshot(parent, item);
+            if (text == null) {
+                return null;
+            }
+            texts.add(text);
+        }
+        return texts;
+    }
+
+
+    String getPrefix() {
+        return myPrefix;
+    }
+
+
+    String getSuffix() {
+        return mySuffix;
+    }
+
+
+    String getDelimiter() {
+        return myDelimiter;
     }
 
 
@@ -66,6 +171,8 @@ public class SeqRenderer<T> implements BiFunction<LiveTemplateBuilder<?>, Observ
 
     /**
      * A seq renderer that renders all its elements with the given item renderer.
+     * If the item renderer is {@linkplain ItemRenderer#pure(Function) pure}, large
+     * blocks of items are rendered in parallel.
      *
      * @param itemRenderer Renderer for items
      * @param <T>          Type of items
@@ -73,7 +180,11 @@ public class SeqRenderer<T> implements BiFunction<LiveTemplateBuilder<?>, Observ
      * @return A simple seq renderer
      */
     public static <T> SeqRenderer<T> forItems(ItemRenderer<? super T> itemRenderer) {
-        return new SeqRenderer<>((ctx, seq) -> LiveList.map(seq, tObs -> itemRenderer.apply(ctx, tObs)));
+        if (itemRenderer.isPure()) {
+            return new SeqRenderer<>((ctx, seq) -> ReactfxExtensions.parallelMap(seq, tObs -> itemRenderer.apply(ctx, tObs)), true, itemRenderer);
+        }
+        // other renderers may return constants for constant items, but their empty texts are kept like the others
+        return new SeqRenderer<>((ctx, seq) -> LiveList.map(seq, tObs -> itemRenderer.apply(ctx, tObs)), false, itemRenderer);
     }
 
 }
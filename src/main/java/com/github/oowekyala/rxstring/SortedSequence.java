@@ -0,0 +1,123 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.reactfx.Subscription;
+import org.reactfx.value.Val;
+
+import com.github.oowekyala.rxstring.ObservableKeySequence.Entry;
+import com.github.oowekyala.rxstring.ReactfxExtensions.SequenceListener;
+import javafx.beans.value.ObservableValue;
+
+
+/**
+ * The elements of a sorted sequence binding, see {@link LiveTemplateBuilder#bindSortedSeq(Function, Function, Comparator, ItemRenderer)}.
+ * The elements are ordered by the current value of the sort key of their item, independently
+ * of the order of the source list. Positions are found by binary search. When the key of an
+ * item changes, only the text of that item is moved, and only if its position changed.
+ * Items with equal keys are kept in the order they were inserted.
+ *
+ * @param <T> Type of items
+ * @param <K> Type of sort keys
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class SortedSequence<T, K> extends ObservableKeySequence<T, K, Entry<K>> {
+
+    private final Comparator<? super K> myComparator;
+    /** Elements in the order of their keys, which is the order of their text. */
+    private final List<Entry<K>> mySorted = new ArrayList<>();
+
+
+    SortedSequence(Function<? super T, ? extends ObservableValue<? extends K>> keyExtractor,
+                   Comparator<? super K> comparator,
+                   Function<T, Val<String>> renderer,
+                   BiFunction<Integer, List<Val<String>>, List<ValIdx>> idxFactory,
+                   BiFunction<Val<String>, ValIdx, Subscription> binder,
+                   SequenceListener<?> listener) {
+        super(keyExtractor, renderer, idxFactory, binder, listener);
+        this.myComparator = Comparator.nullsLast(comparator);
+    }
+
+
+    @Override
+    Entry<K> newEntry(ObservableValue<? extends K> key, Val<String> rendered) {
+        return new Entry<>(key, rendered);
+    }
+
+
+    @Override
+    void placeAll(List<Entry<K>> added) {
+        List<Entry<K>> sorted = new ArrayList<>(added);
+        // stable, so equal keys stay in insertion order
+        sorted.sort((a, b) -> myComparator.compare(a.key.getValue(), b.key.getValue()));
+
+        List<Val<String>> rendered = new ArrayList<>(sorted.size());
+        for (Entry<K> entry : sorted) {
+            rendered.add(entry.rendered);
+        }
+        List<ValIdx> indices = newIndices(0, rendered);
+        for (int i = 0; i < sorted.size(); i++) {
+            bind(sorted.get(i), indices.get(i));
+        }
+        mySorted.addAll(sorted);
+    }
+
+
+    @Override
+    int place(Entry<K> entry) {
+        int pos = insertionPoint(entry.key.getValue());
+        mySorted.add(pos, entry);
+        return pos;
+    }
+
+
+    @Override
+    void remove(Entry<K> entry) {
+        int pos = entry.idx.index();
+        mySorted.remove(pos);
+        myListener.removed(pos, pos + 1);
+    }
+
+
+    /** Moves the text of the element if its position changed. */
+    @Override
+    void onKeyChange(Entry<K> entry) {
+        int oldPos = entry.idx.index();
+        mySorted.remove(oldPos);
+        int newPos = place(entry);
+
+        if (newPos != oldPos) {
+            entry.idx.attach(newPos, entry.idx.detach());
+        }
+    }
+
+
+    @Override
+    int clear() {
+        int size = mySorted.size();
+        mySorted.clear();
+        return size;
+    }
+
+
+    /** Index after the last element whose key is lower or equal to the given key. */
+    private int insertionPoint(K key) {
+        int lo = 0;
+        int hi = mySorted.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (myComparator.compare(mySorted.get(mid).key.getValue(), key) <= 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
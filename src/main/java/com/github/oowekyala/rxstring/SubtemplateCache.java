@@ -0,0 +1,192 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+
+/**
+ * A cache of bound sub-templates, keyed by the identity of their data context.
+ * When an item of a sequence rendered with a {@linkplain ItemRenderer#templated(SubtemplateCache, Consumer)
+ * cached templated renderer} is removed, its sub-template stays bound and is parked
+ * in this cache. If the same item object shows up again, e.g. because it was moved,
+ * re-added, or is shown in another sequence that uses the same renderer, the parked
+ * sub-template is reused with its text and subscriptions, instead of being built and
+ * bound again. A sub-template is only used by one item at a time, if the same item
+ * is shown twice, the second one gets its own sub-template.
+ *
+ * <p>Parked sub-templates keep their data context reachable, so the cache is bounded
+ * by a capacity rather than by weak references. When the capacity is exceeded, the
+ * least recently parked sub-templates are unbound and evicted.
+ *
+ * <p>A cache may be shared by several renderers. This class is not thread-safe, it
+ * should be used on the thread the templates are bound on.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+public final class SubtemplateCache {
+
+    private final int myCapacity;
+    private final Map<Key, LiveTemplateImpl<?>> myParked;
+    /** Sub-templates handed out by a renderer, that are not attached yet. */
+    private final Map<Key, Lent> myLent = new HashMap<>();
+    private long myHits;
+    private long myMisses;
+
+
+    /**
+     * Creates a new cache.
+     *
+     * @param capacity Maximum number of parked sub-templates
+     *
+     * @throws IllegalArgumentException if the capacity is negative
+     */
+    public SubtemplateCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Negative capacity " + capacity);
+        }
+        this.myCapacity = capacity;
+        this.myParked = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+
+    /** Returns the number of times a parked sub-template was attached again. */
+    public long getHitCount() {
+        return myHits;
+    }
+
+
+    /** Returns the number of times a newly built sub-template was attached. */
+    public long getMissCount() {
+        return myMisses;
+    }
+
+
+    /** Returns the number of parked sub-templates. */
+    public int size() {
+        return myParked.size();
+    }
+
+
+    /**
+     * Unbinds and evicts all parked sub-templates, and those that were rendered
+     * but never attached to a sequence. The hit and miss counts are kept.
+     */
+    public void clear() {
+        List<LiveTemplateImpl<?>> evicted = new ArrayList<>(myParked.values());
+        myLent.values().forEach(lent -> evicted.add(lent.myTemplate));
+        myParked.clear();
+        myLent.clear();
+        evicted.forEach(SubtemplateCache::dispose);
+    }
+
+
+    /**
+     * Returns a sub-template for the given item. The sub-template parked for the item
+     * is taken out of the cache if there is one, otherwise the factory builds a new one.
+     * Renderers may be applied several times on the same item before the result is used,
+     * so the sub-template is lent until it's {@linkplain #claim(Object, Object, LiveTemplateImpl) claimed},
+     * and returned again in the meantime.
+     */
+    @SuppressWarnings("unchecked")
+    <T> LiveTemplateImpl<T> lend(Object owner, T item, Supplier<LiveTemplateImpl<T>> factory) {
+        Key key = new Key(owner, item);
+        Lent lent = myLent.get(key);
+        if (lent == null) {
+            LiveTemplateImpl<?> parked = myParked.remove(key);
+            lent = parked != null ? new Lent(parked, true) : new Lent(factory.get(), false);
+            myLent.put(key, lent);
+        }
+        return (LiveTemplateImpl<T>) lent.myTemplate;
+    }
+
+
+    /** Parks a sub-template that's not used anymore. */
+    void park(Object owner, Object item, LiveTemplateImpl<?> template) {
+        LiveTemplateImpl<?> previous = myParked.put(new Key(owner, item), template);
+        if (previous != null && previous != template) {
+            dispose(previous);
+        }
+
+        while (myParked.size() > myCapacity) {
+            Key eldest = myParked.keySet().iterator().next();
+            dispose(myParked.remove(eldest));
+        }
+    }
+
+
+    /**
+     * Records that the given sub-template is attached to a sequence. This
+     * is a hit if it was parked when it was lent, a miss otherwise.
+     */
+    void claim(Object owner, Object item, LiveTemplateImpl<?> template) {
+        Key key = new Key(owner, item);
+        Lent lent = myLent.get(key);
+        if (lent != null && lent.myTemplate == template) {
+            myLent.remove(key);
+            if (lent.myWasParked) {
+                myHits++;
+                return;
+            }
+        }
+        myMisses++;
+    }
+
+
+    private static void dispose(LiveTemplateImpl<?> template) {
+        template.dataContextProperty().unbind();
+        template.setDataContext(null);
+    }
+
+
+    /** A sub-template that's not attached yet. */
+    private static final class Lent {
+
+        private final LiveTemplateImpl<?> myTemplate;
+        private final boolean myWasParked;
+
+
+        Lent(LiveTemplateImpl<?> template, boolean wasParked) {
+            this.myTemplate = template;
+            this.myWasParked = wasParked;
+        }
+    }
+
+
+    /** Compares the owner renderer and the item by identity. */
+    private static final class Key {
+
+        private final Object myOwner;
+        private final Object myItem;
+
+
+        Key(Object owner, Object item) {
+            this.myOwner = owner;
+            this.myItem = item;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return myOwner == key.myOwner && myItem == key.myItem;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(myOwner) + System.identityHashCode(myItem);
+        }
+    }
+}
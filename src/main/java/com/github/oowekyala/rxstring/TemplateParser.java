@@ -0,0 +1,224 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javafx.beans.value.ObservableValue;
+import javafx.collections.ObservableList;
+
+
+/**
+ * Compiles the text syntax of {@link LiveTemplate#fromText(String, Class)} to
+ * a {@link TemplatePlan}, using a {@link LiveTemplateBuilderImpl}. Compiled plans are
+ * cached per data class and template source, so that a template is compiled only once
+ * however many views use it.
+ *
+ * <p>The syntax is plain text, in which {@code ${name}} refers to the property {@code name}
+ * of the data context. {@code $$} is a literal {@code $}. Sequence properties accept options,
+ * separated from the name by a semicolon, e.g. {@code ${children; sep=', ', prefix='[', suffix=']'}}.
+ * Option values are single-quoted, a backslash escapes the next character.
+ *
+ * <p>Properties are read with a {@link PropertyAccessor}. A property is bound with
+ * {@link LiveTemplateBuilder#bindSeq(Function, SeqRenderer)} if its declared type is an
+ * {@link ObservableList}, {@link LiveTemplateBuilder#bind(Function)} if it's an {@link ObservableValue},
+ * and {@link LiveTemplateBuilder#render(Function, ItemRenderer)} otherwise.
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class TemplateParser {
+
+    private static final ClassValue<ConcurrentMap<String, TemplatePlan<?>>> PLAN_CACHE =
+        new ClassValue<ConcurrentMap<String, TemplatePlan<?>>>() {
+            @Override
+            protected ConcurrentMap<String, TemplatePlan<?>> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
+
+    private final String mySource;
+    private int myPos;
+
+
+    private TemplateParser(String source) {
+        this.mySource = source;
+    }
+
+
+    /**
+     * Returns the plan of the given template source, compiling it if it
+     * wasn't compiled for this data class yet.
+     *
+     * @throws IllegalArgumentException If the source is malformed, or refers to unknown properties
+     */
+    @SuppressWarnings("unchecked")
+    static <D> TemplatePlan<D> getPlan(String source, Class<D> dataClass) {
+        return (TemplatePlan<D>) PLAN_CACHE.get(dataClass).computeIfAbsent(source, s -> compile(s, dataClass));
+    }
+
+
+    /** Compiles the given source, bypassing the cache. */
+    static <D> TemplatePlan<D> compile(String source, Class<D> dataClass) {
+        LiveTemplateBuilderImpl<D> builder = new LiveTemplateBuilderImpl<>();
+        new TemplateParser(source).parseInto(builder, dataClass);
+        return builder.toPlan();
+    }
+
+
+    private <D> void parseInto(LiveTemplateBuilderImpl<D> builder, Class<D> dataClass) {
+        StringBuilder text = new StringBuilder();
+
+        while (myPos < mySource.length()) {
+            char c = mySource.charAt(myPos);
+            if (c == '$' && lookahead(1) == '$') {
+                text.append('$');
+                myPos += 2;
+            } else if (c == '$' && lookahead(1) == '{') {
+                if (text.length() > 0) {
+                    builder.append(text.toString());
+                    text.setLength(0);
+                }
+                int start = myPos;
+                myPos += 2;
+                parseBinding(builder, dataClass, start);
+            } else {
+                text.append(c);
+                myPos++;
+            }
+        }
+
+        if (text.length() > 0) {
+            builder.append(text.toString());
+        }
+    }
+
+
+    private <D> void parseBinding(LiveTemplateBuilderImpl<D> builder, Class<D> dataClass, int start) {
+        skipWhitespace();
+        String name = parseIdentifier();
+        skipWhitespace();
+
+        Map<String, String> options = new HashMap<>();
+        if (lookahead(0) == ';') {
+            myPos++;
+            parseOptions(options);
+        }
+
+        if (lookahead(0) != '}') {
+            throw error("Unclosed '${'", start);
+        }
+        myPos++;
+
+        PropertyAccessor property = PropertyAccessor.find(dataClass, name);
+        if (property == null) {
+            throw error("Unknown property '" + name + "' of " + dataClass.getName(), start);
+        }
+
+        if (ObservableList.class.isAssignableFrom(property.getType())) {
+            String sep = options.remove("sep");
+            String prefix = options.remove("prefix");
+            String suffix = options.remove("suffix");
+            checkNoOptionsLeft(options, start);
+            builder.bindSeq(d -> (ObservableList<?>) property.get(d),
+                            SeqRenderer.delimited(prefix == null ? "" : prefix,
+                                                  suffix == null ? "" : suffix,
+                                                  sep == null ? "" : sep,
+                                                  ItemRenderer.asString()));
+        } else if (ObservableValue.class.isAssignableFrom(property.getType())) {
+            checkNoOptionsLeft(options, start);
+            builder.bind(d -> (ObservableValue<?>) property.get(d));
+        } else {
+            checkNoOptionsLeft(options, start);
+            builder.render(property::get, ItemRenderer.asString());
+        }
+    }
+
+
+    private void parseOptions(Map<String, String> options) {
+        while (true) {
+            skipWhitespace();
+            int start = myPos;
+            String key = parseIdentifier();
+            skipWhitespace();
+            if (lookahead(0) != '=') {
+                throw error("Expected '=' after option '" + key + "'", myPos);
+            }
+            myPos++;
+            skipWhitespace();
+            if (options.put(key, parseQuoted()) != null) {
+                throw error("Duplicate option '" + key + "'", start);
+            }
+            skipWhitespace();
+            if (lookahead(0) != ',') {
+                return;
+            }
+            myPos++;
+        }
+    }
+
+
+    private String parseQuoted() {
+        int start = myPos;
+        if (lookahead(0) != '\'') {
+            throw error("Expected a quoted option value", start);
+        }
+        myPos++;
+
+        StringBuilder value = new StringBuilder();
+        while (myPos < mySource.length()) {
+            char c = mySource.charAt(myPos++);
+            if (c == '\'') {
+                return value.toString();
+            } else if (c == '\\' && myPos < mySource.length()) {
+                value.append(mySource.charAt(myPos++));
+            } else {
+                value.append(c);
+            }
+        }
+        throw error("Unclosed quoted value", start);
+    }
+
+
+    private String parseIdentifier() {
+        int start = myPos;
+        if (myPos < mySource.length() && Character.isJavaIdentifierStart(mySource.charAt(myPos))) {
+            myPos++;
+            while (myPos < mySource.length() && Character.isJavaIdentifierPart(mySource.charAt(myPos))) {
+                myPos++;
+            }
+        }
+        if (start == myPos) {
+            throw error("Expected an identifier", start);
+        }
+        return mySource.substring(start, myPos);
+    }
+
+
+    private void skipWhitespace() {
+        while (myPos < mySource.length() && Character.isWhitespace(mySource.charAt(myPos))) {
+            myPos++;
+        }
+    }
+
+
+    /** Returns the char at the given offset from the current position, or 0 if it's out of bounds. */
+    private char lookahead(int offset) {
+        int i = myPos + offset;
+        return i < mySource.length() ? mySource.charAt(i) : 0;
+    }
+
+
+    private void checkNoOptionsLeft(Map<String, String> options, int start) {
+        if (!options.isEmpty()) {
+            throw error("Unsupported options " + options.keySet(), start);
+        }
+    }
+
+
+    private IllegalArgumentException error(String message, int offset) {
+        return new IllegalArgumentException(message + " at offset " + offset + " in template \"" + mySource + "\"");
+    }
+}
@@ -0,0 +1,324 @@
+package com.github.oowekyala.rxstring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import com.github.oowekyala.rxstring.BindingExtractor.Kind;
+import com.github.oowekyala.rxstring.BindingExtractor.NumberBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.ScopedBinding;
+import com.github.oowekyala.rxstring.BindingExtractor.ValueBinding;
+import javafx.beans.value.ObservableNumberValue;
+
+
+/**
+ * The compiled form of a template, produced by {@link LiveTemplateBuilderImpl#toTemplate()}.
+ * This is a flat list of typed bindings, which is interpreted by {@link BoundLiveTemplate}.
+ * A plan is immutable and shared by all the copies of a template.
+ *
+ * <p>Sub-templates that are {@linkplain LiveTemplateBuilder#renderTemplate rendered}
+ * with a non-observable extractor are inlined into the plan of their parent. Their bindings
+ * are evaluated in a scope, whose data context is extracted once from the data context of the
+ * enclosing scope. Scope 0 is the data context of the template. When the data context of a
+ * scope is null, none of its bindings are rendered, as if the sub-template was unbound.
+ *
+ * @param <D> Type of data context
+ *
+ * @author Clément Fournier
+ * @since 1.1
+ */
+final class TemplatePlan<D> {
+
+    private static final int ROOT_SCOPE = 0;
+
+    private final List<BindingExtractor<?>> myBindings;
+    /** Scope of each binding. */
+    private final int[] myBindingScopes;
+    /** Extractor of each scope, from the context of its parent scope. The root scope has none. */
+    private final List<Function<Object, ?>> myScopeExtractors;
+    /** Parent of each scope. Parents have a lower index than their children. */
+    private final int[] myScopeParents;
+
+    /*
+     * Moving averages of the sizes of the bound instances of this plan, used to presize
+     * their buffers. They're updated without synchronization, since they're only hints
+     * and int writes are atomic.
+     */
+    private int myTextLengthHint;
+    private final int[] mySequenceSizeHints;
+
+
+    private TemplatePlan(List<BindingExtractor<?>> bindings,
+                         int[] bindingScopes,
+                         List<Function<Object, ?>> scopeExtractors,
+                         int[] scopeParents) {
+        this.myBindings = Collections.unmodifiableList(bindings);
+        this.myBindingScopes = bindingScopes;
+        this.myScopeExtractors = scopeExtractors;
+        this.myScopeParents = scopeParents;
+        this.mySequenceSizeHints = new int[bindings.size()];
+    }
+
+
+    /** Number of bindings. */
+    int size() {
+        return myBindings.size();
+    }
+
+
+    /**
+     * Returns the binding at the given index. It must be bound to
+     * the context of its {@linkplain #scopeOf(int) scope}.
+     */
+    @SuppressWarnings("unchecked")
+    BindingExtractor<Object> get(int i) {
+        return (BindingExtractor<Object>) myBindings.get(i);
+    }
+
+
+    /** Returns the scope of the binding at the given index. */
+    int scopeOf(int i) {
+        return myBindingScopes[i];
+    }
+
+
+    /** Expected length of the text of a bound instance of this plan. */
+    int textLengthHint() {
+        return myTextLengthHint;
+    }
+
+
+    /** Expected number of elements of the sequence of the binding at the given index. */
+    int sequenceSizeHint(int i) {
+        return mySequenceSizeHints[i];
+    }
+
+
+    /**
+     * Records the sizes of an instance of this plan that was just bound, to update
+     * the hints. Each hint moves a quarter of the way towards the new sample.
+     *
+     * @param textLength Length of the text
+     * @param sequences  Elements of each binding
+     */
+    void recordSizes(int textLength, List<? extends List<?>> sequences) {
+        myTextLengthHint = movingAverage(myTextLengthHint, textLength);
+        for (int i = 0; i < mySequenceSizeHints.length; i++) {
+            mySequenceSizeHints[i] = movingAverage(mySequenceSizeHints[i], sequences.get(i).size());
+        }
+    }
+
+
+    private static int movingAverage(int avg, int sample) {
+        // rounds up, so that the hint errs on the side of a larger buffer
+        return avg == 0 ? sample : avg + Math.floorDiv(sample - avg + 3, 4);
+    }
+
+
+    /** Number of scopes, including the root scope. */
+    int scopeCount() {
+        return myScopeParents.length;
+    }
+
+
+    /**
+     * Extracts the data context of each scope from the data context of the template.
+     * Each extractor is evaluated once. The scopes nested in a scope whose context
+     * is null have a null context too.
+     */
+    Object[] extractScopes(D dataContext) {
+        Object[] contexts = new Object[scopeCount()];
+        contexts[ROOT_SCOPE] = dataContext;
+        for (int i = 1; i < contexts.length; i++) {
+            Object parentCtx = contexts[myScopeParents[i]];
+            contexts[i] = parentCtx == null ? null : myScopeExtractors.get(i).apply(parentCtx);
+        }
+        return contexts;
+    }
+
+
+    /**
+     * Renders the text of this plan for the given data context, without observing anything
+     * or creating sub-templates. Property values are read once, so this can run on another
+     * thread than the one that owns them, as long as they're not modified in the meantime.
+     * Returns null if some bindings can only be rendered by binding them, e.g. sequences
+     * with a custom {@link SeqRenderer}.
+     */
+    String snapshot(D dataContext) {
+        return snapshotBindings(dataContext).getText();
+    }
+
+
+    /**
+     * Renders the text of each binding of this plan for the given data context, like
+     * {@link #snapshot(Object)}. Value and number bindings whose text only depends on
+     * their value also record that value, so that a template bound to the same context
+     * can reuse their text instead of rendering it again, see {@link BoundLiveTemplate}.
+     */
+    Snapshot snapshotBindings(D dataContext) {
+        Object[] scopeContexts = extractScopes(dataContext);
+        Snapshot snapshot = new Snapshot(size());
+        StringBuilder text = new StringBuilder(Math.max(16, myTextLengthHint));
+        boolean isComplete = true;
+
+        for (int i = 0; i < size(); i++) {
+            Object context = scopeContexts[scopeOf(i)];
+            if (context == null) {
+                continue;
+            }
+
+            BindingExtractor<Object> binding = get(i);
+            String bindingText;
+            if (binding.kind() == Kind.VALUE && ((ValueBinding<Object, ?>) binding).isValueFunction()) {
+                ValueBinding<Object, ?> value = (ValueBinding<Object, ?>) binding;
+                Object v = value.extract(context).getValue();
+                bindingText = value.snapshotValue(v);
+                snapshot.record(i, context, bindingText, v);
+            } else if (binding.kind() == Kind.NUMBER) {
+                NumberBinding<Object> number = (NumberBinding<Object>) binding;
+                ObservableNumberValue v = number.extract(context);
+                bindingText = binding.snapshot(context);
+                snapshot.record(i, context, bindingText, number.getFormat().bits(v));
+            } else {
+                bindingText = binding.snapshot(context);
+            }
+
+            if (bindingText == null) {
+                isComplete = false;
+            } else if (isComplete) {
+                text.append(bindingText);
+            }
+        }
+
+        snapshot.myText = isComplete ? text.toString() : null;
+        return snapshot;
+    }
+
+
+    /**
+     * Returns the bindings of this plan, wrapped into scoped bindings so that they can
+     * be added to the builder of another template. See {@link LiveTemplateBuilderImpl}.
+     */
+    List<BindingExtractor<?>> toScopedBindings() {
+        List<BindingExtractor<?>> result = new ArrayList<>(size());
+        for (int i = 0; i < size(); i++) {
+            BindingExtractor<?> binding = myBindings.get(i);
+            for (int scope = myBindingScopes[i]; scope != ROOT_SCOPE; scope = myScopeParents[scope]) {
+                binding = ScopedBinding.wrap(myScopeExtractors.get(scope), binding);
+            }
+            result.add(binding);
+        }
+        return result;
+    }
+
+
+    /**
+     * Compiles the bindings of a builder into a plan.
+     */
+    static <D> TemplatePlan<D> compile(List<BindingExtractor<D>> bindings) {
+        List<BindingExtractor<?>> compiled = new ArrayList<>(bindings.size());
+        int[] bindingScopes = new int[bindings.size()];
+        List<Function<Object, ?>> scopeExtractors = new ArrayList<>();
+        List<Integer> scopeParents = new ArrayList<>();
+
+        scopeExtractors.add(null);
+        scopeParents.add(-1);
+
+        for (int i = 0; i < bindings.size(); i++) {
+            BindingExtractor<?> binding = bindings.get(i);
+            int scope = ROOT_SCOPE;
+
+            while (binding.kind() == Kind.SCOPED) {
+                ScopedBinding<?, ?> scoped = (ScopedBinding<?, ?>) binding;
+                scope = findOrAddScope(scope, scoped.getScopeExtractor(), scopeExtractors, scopeParents);
+                binding = scoped.getInner();
+            }
+
+            if (binding.kind() == Kind.VALUE) {
+                binding = ((ValueBinding<?, ?>) binding).compile();
+            }
+
+            compiled.add(binding);
+            bindingScopes[i] = scope;
+        }
+
+        return new TemplatePlan<>(compiled,
+                                  bindingScopes,
+                                  Collections.unmodifiableList(scopeExtractors),
+                                  scopeParents.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+
+    /** Scopes are identified by their parent and the identity of their extractor. */
+    private static int findOrAddScope(int parent,
+                                      Function<Object, ?> extractor,
+                                      List<Function<Object, ?>> scopeExtractors,
+                                      List<Integer> scopeParents) {
+        for (int i = 1; i < scopeExtractors.size(); i++) {
+            if (scopeParents.get(i) == parent && scopeExtractors.get(i) == extractor) {
+                return i;
+            }
+        }
+        scopeExtractors.add(extractor);
+        scopeParents.add(parent);
+        return scopeExtractors.size() - 1;
+    }
+
+
+    /**
+     * The text of a plan rendered for a data context, binding by binding, see
+     * {@link #snapshotBindings(Object)}. This is immutable once it's built.
+     */
+    static final class Snapshot {
+
+        /** Context each binding was rendered in, only for the bindings whose text can be reused. */
+        private final Object[] myContexts;
+        private final String[] myTexts;
+        /** Value each binding was rendered from, for numbers, the bits of the number. */
+        private final Object[] myValues;
+        /** Null if some bindings could not be rendered. */
+        private String myText;
+
+
+        private Snapshot(int size) {
+            this.myContexts = new Object[size];
+            this.myTexts = new String[size];
+            this.myValues = new Object[size];
+        }
+
+
+        private void record(int i, Object context, String text, Object value) {
+            myContexts[i] = context;
+            myTexts[i] = text;
+            myValues[i] = value;
+        }
+
+
+        /** Text of the whole plan, null if some bindings can only be rendered by binding them. */
+        String getText() {
+            return myText;
+        }
+
+
+        /**
+         * Whether the text of the binding at the given index can be reused when it's
+         * bound to the given context, as long as its value is {@link #valueOf(int)}.
+         */
+        boolean isReusable(int i, Object context) {
+            return myContexts[i] != null && myContexts[i] == context;
+        }
+
+
+        /** Text rendered for the binding at the given index. */
+        String textOf(int i) {
+            return myTexts[i];
+        }
+
+
+        /** Value the binding at the given index was rendered from. */
+        Object valueOf(int i) {
+            return myValues[i];
+        }
+    }
+}
@@ -1,24 +1,31 @@
 package com.github.oowekyala.rxstring;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
 
 
 /**
- * Keeps track of the relative offset of a binding in a sequence.
+ * Keeps track of the relative offset of a binding in a sequence. If the sequence
+ * has a delimiter, the range of each element but the first starts with it.
  *
  * @author Clément Fournier
  * @since 1.0
  */
 final class ValIdx implements Comparable<ValIdx> {
 
-    private final StringBuffer stringBuffer;
+    private final StringBuilder stringBuffer;
     /** Index in the table of sequence offsets. */
     private final int outerIdx;
     /** The enclosing sequence. */
     private final List<ValIdx> parent;
     /** Replace handler for the parent template. */
     private final ReplaceHandler myParentReplaceHandler;
+    /** Delimiter of the enclosing sequence, possibly empty. */
+    private final String myDelimiter;
     /** Text offset relative to the start of the sequence. */
     private int relativeOffset;
     /** Index in the parent list. Shifted when elements are inserted to the left. */
@@ -28,28 +35,108 @@ final class ValIdx implements Comparable<ValIdx> {
 
 
     ValIdx(int[] myOuterOffsets,
-           StringBuffer stringBuffer,
+           StringBuilder stringBuffer,
            int outerIdx,
            int innerIdx,
            List<ValIdx> parent,
+           String delimiter,
            ReplaceHandler parentReplaceHandler) {
 
+        this(myOuterOffsets, stringBuffer, outerIdx, parent, delimiter, parentReplaceHandler);
+
+        // The initial value is inserted via replaceValue
+        insertAll(parent, innerIdx, Collections.singletonList(this), new String[] {""});
+    }
+
+
+    /** Creates a node that is not yet inserted in its parent. */
+    private ValIdx(int[] myOuterOffsets,
+                   StringBuilder stringBuffer,
+                   int outerIdx,
+                   List<ValIdx> parent,
+                   String delimiter,
+                   ReplaceHandler parentReplaceHandler) {
+
         this.stringBuffer = stringBuffer;
         this.outerIdx = outerIdx;
-        this.innerIdx = innerIdx;
         this.parent = parent;
         this.myOuterOffsets = myOuterOffsets;
-
-        this.relativeOffset = innerIdx == 0 ? 0 : left().relativeOffset + left().length();
+        this.myDelimiter = delimiter;
         this.myParentReplaceHandler = parentReplaceHandler.withOffset(this::currentAbsoluteOffset);
+    }
+
+
+    /**
+     * Inserts new elements in a sequence at the given index, with their initial text. The
+     * text of the whole block, with the delimiters, is inserted with a single replacement,
+     * and the following elements are shifted in one pass.
+     *
+     * @param seq       Sequence
+     * @param from      Index of the first inserted element
+     * @param texts     Initial text of each inserted element, null is treated as empty
+     * @param delimiter Delimiter of the sequence
+     *
+     * @return The inserted elements
+     */
+    static List<ValIdx> insertRange(int[] outerOffsets,
+                                    StringBuilder stringBuffer,
+                                    int outerIdx,
+                                    List<ValIdx> seq,
+                                    int from,
+                                    String[] texts,
+                                    String delimiter,
+                                    ReplaceHandler parentReplaceHandler) {
+
+        List<ValIdx> inserted = new ArrayList<>(texts.length);
+        for (int k = 0; k < texts.length; k++) {
+            inserted.add(new ValIdx(outerOffsets, stringBuffer, outerIdx, seq, delimiter, parentReplaceHandler));
+        }
+        insertAll(seq, from, inserted, texts);
+        return inserted;
+    }
+
 
-        // you can't call left().length() after setting this node in its parent
-        parent.add(innerIdx, this);
-        propagateItemShift(+1);
-        // The offset shift will be propagated via replaceValue
-        // when inserting the initial value, so not here
-        // propagateOffsetShift(initialLength);
+    /** Inserts the given nodes in the sequence, see {@link #insertRange}. */
+    private static void insertAll(List<ValIdx> seq, int from, List<ValIdx> nodes, String[] texts) {
+        ValIdx first = nodes.get(0);
+        int count = nodes.size();
+        int start = from < seq.size() ? seq.get(from).relativeOffset
+                                      : from == 0 ? 0 : seq.get(from - 1).relativeOffset + seq.get(from - 1).length();
+
+        StringBuilder block = new StringBuilder();
+        for (int k = 0; k < count; k++) {
+            ValIdx node = nodes.get(k);
+            node.innerIdx = from + k;
+            node.relativeOffset = start + block.length();
+            if (node.innerIdx > 0) {
+                block.append(node.myDelimiter);
+            }
+            if (texts[k] != null) {
+                block.append(texts[k]);
+            }
+        }
+
+        int length = block.length();
+        if (from == 0 && !seq.isEmpty()) {
+            // the previous first element is now preceded by a delimiter
+            block.append(first.myDelimiter);
+        }
 
+        int shift = block.length();
+        for (int j = from; j < seq.size(); j++) {
+            ValIdx right = seq.get(j);
+            right.innerIdx += count;
+            // the range of the previous first element starts with its new delimiter
+            right.relativeOffset += j == from ? length : shift;
+        }
+        seq.addAll(from, nodes);
+
+        if (shift > 0) {
+            first.myParentReplaceHandler.replace(0, 0, block.toString());
+            for (int j = first.outerIdx + 1; j < first.myOuterOffsets.length; j++) {
+                first.myOuterOffsets[j] += shift;
+            }
+        }
     }
 
 
@@ -75,45 +162,236 @@ final class ValIdx implements Comparable<ValIdx> {
     }
 
 
-    /** Replaces all of this text range. */
+    /** Index of this element in its sequence. */
+    int index() {
+        return innerIdx;
+    }
+
+
+    /** Length of the delimiter at the start of this range. */
+    private int delimiterLength() {
+        return innerIdx == 0 ? 0 : myDelimiter.length();
+    }
+
+
+    /** Replaces all of this text range, except the delimiter. */
     void replaceValue(String value) {
-        replaceRelative(0, length(), value);
+        replaceRelative(0, length() - delimiterLength(), value);
     }
 
 
     /**
-     * Replaces part of the text range of this valid.
+     * Replaces part of the text range of this valid. The offsets
+     * are relative to the end of the delimiter.
      */
     void replaceRelative(int start, int end, String value) {
         String safe = value == null ? "" : value;
+        int delimiterLength = delimiterLength();
 
-        myParentReplaceHandler.replace(start, end, safe);
+        myParentReplaceHandler.replace(delimiterLength + start, delimiterLength + end, safe);
         propagateOffsetShift(safe.length() - (end - start));
     }
 
 
+    /**
+     * Lets the writer append the text of this range directly to the buffer, without going
+     * through the replace handler. This range must be at the end of the buffer, which is
+     * the case during the initial bind of a template, when there's no one to notify.
+     *
+     * @param writer Appends text to the buffer, and returns a result
+     *
+     * @return The result of the writer
+     */
+    <R> R appendDirectly(Function<StringBuilder, R> writer) {
+        int before = stringBuffer.length();
+        R result = writer.apply(stringBuffer);
+        propagateOffsetShift(stringBuffer.length() - before);
+        return result;
+    }
+
+
     /**
      * Deletes this.
      */
     void delete() {
-        replaceValue("");
+        deleteRange(parent, innerIdx, innerIdx + 1);
+    }
+
+
+    /**
+     * Deletes the elements of a sequence between the given indices, with a single
+     * replacement, and shifts the following elements in one pass.
+     *
+     * @param seq  Sequence
+     * @param from Start of the range (inclusive)
+     * @param to   End of the range (exclusive)
+     */
+    static void deleteRange(List<ValIdx> seq, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+
+        ValIdx first = seq.get(from);
+        ValIdx last = seq.get(to - 1);
+        int length = last.relativeOffset + last.length() - first.relativeOffset;
+        int count = to - from;
+        // the new first element loses its delimiter
+        int shift = from == 0 && to < seq.size() ? length + first.myDelimiter.length() : length;
+
+        first.myParentReplaceHandler.replace(0, shift, "");
+
+        for (int j = to; j < seq.size(); j++) {
+            ValIdx right = seq.get(j);
+            right.innerIdx -= count;
+            right.relativeOffset -= j == to ? length : shift;
+        }
+        for (int j = first.outerIdx + 1; j < first.myOuterOffsets.length; j++) {
+            first.myOuterOffsets[j] -= shift;
+        }
 
-        // propagate the shift before removing, otherwise we're
-        // missing the right sibling
-        propagateItemShift(-1);
-        parent.remove(innerIdx);
+        seq.subList(from, to).clear();
     }
 
 
-    private void propagateRight(Consumer<ValIdx> idxConsumer) {
-        for (int j = innerIdx + 1; j < parent.size(); j++) {
-            idxConsumer.accept(parent.get(j));
+    /**
+     * Removes this from its sequence like {@link #delete()}, but returns its
+     * text so that it can be {@linkplain #attach(int, String) attached} again
+     * elsewhere in the sequence. The subscriptions that update this range are kept.
+     */
+    String detach() {
+        String text = text();
+        delete();
+        return text;
+    }
+
+
+    /** Text of this range, without the delimiter. */
+    private String text() {
+        int start = currentAbsoluteOffset();
+        return stringBuffer.substring(start + delimiterLength(), start + length());
+    }
+
+
+    /**
+     * Inserts this back into its sequence at the given index, with the given text.
+     */
+    void attach(int innerIdx, String text) {
+        insertAll(parent, innerIdx, Collections.singletonList(this), new String[] {text});
+    }
+
+
+    /**
+     * Reorders the elements of a sequence between the given indices, with their text. Either
+     * the moved elements are {@linkplain #detach() detached} and reattached, or the whole range
+     * is rewritten at once, whichever replaces less text. Elements that keep their relative
+     * order are not moved.
+     *
+     * @param seq        Sequence to reorder
+     * @param from       Start of the permuted range (inclusive)
+     * @param to         End of the permuted range (exclusive)
+     * @param newIndexOf Maps the old index of an element to its new index, in the whole sequence
+     */
+    static void permute(List<ValIdx> seq, int from, int to, IntUnaryOperator newIndexOf) {
+        int n = to - from;
+        if (n < 2) {
+            return;
+        }
+
+        ValIdx[] elements = seq.subList(from, to).toArray(new ValIdx[n]);
+        String[] texts = new String[n];
+        // old index of the element that ends up at each position
+        int[] oldIdxAt = new int[n];
+        int blockStart = elements[0].relativeOffset;
+        int blockLength = elements[n - 1].relativeOffset + elements[n - 1].length() - blockStart;
+
+        for (int k = 0; k < n; k++) {
+            texts[k] = elements[k].text();
+            oldIdxAt[newIndexOf.applyAsInt(from + k) - from] = k;
+        }
+
+        boolean[] stable = stableIndices(oldIdxAt);
+        int moveCost = 0;
+        for (int j = 0; j < n; j++) {
+            if (!stable[j]) {
+                // one deletion and one insertion
+                moveCost += 2 * texts[oldIdxAt[j]].length();
+            }
+        }
+
+        if (moveCost < blockLength) {
+            for (int k = n - 1; k >= 0; k--) {
+                if (!stable[newIndexOf.applyAsInt(from + k) - from]) {
+                    elements[k].delete();
+                }
+            }
+            for (int j = 0; j < n; j++) {
+                if (!stable[j]) {
+                    elements[oldIdxAt[j]].attach(from + j, texts[oldIdxAt[j]]);
+                }
+            }
+        } else {
+            // rewrite the range in one replacement. Its length doesn't change,
+            // so the offsets outside of it are untouched
+            StringBuilder newText = new StringBuilder(blockLength);
+            for (int j = 0; j < n; j++) {
+                ValIdx moved = elements[oldIdxAt[j]];
+                moved.innerIdx = from + j;
+                moved.relativeOffset = blockStart + newText.length();
+                if (moved.innerIdx > 0) {
+                    newText.append(moved.myDelimiter);
+                }
+                newText.append(texts[oldIdxAt[j]]);
+                seq.set(from + j, moved);
+            }
+            seq.get(from).myParentReplaceHandler.replace(0, blockLength, newText.toString());
         }
     }
 
 
-    private void propagateItemShift(int shift) {
-        propagateRight(idx -> idx.shiftRightInSeq(shift));
+    /**
+     * Given the old positions of elements in their new order, returns which
+     * new positions are part of a longest increasing subsequence of the old
+     * positions. Those elements keep their relative order, so they don't need
+     * to be moved for the others to reach their new position.
+     */
+    static boolean[] stableIndices(int[] oldPositions) {
+        int n = oldPositions.length;
+        // tails[k]: index of the smallest tail of an increasing subsequence of length k + 1
+        int[] tails = new int[n];
+        int[] predecessors = new int[n];
+        int length = 0;
+
+        for (int i = 0; i < n; i++) {
+            int pos = oldPositions[i];
+            int lo = 0;
+            int hi = length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (oldPositions[tails[mid]] < pos) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            predecessors[i] = lo > 0 ? tails[lo - 1] : -1;
+            tails[lo] = i;
+            if (lo == length) {
+                length++;
+            }
+        }
+
+        boolean[] stable = new boolean[n];
+        for (int i = length > 0 ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+            stable[i] = true;
+        }
+        return stable;
+    }
+
+
+    private void propagateRight(Consumer<ValIdx> idxConsumer) {
+        for (int j = innerIdx + 1; j < parent.size(); j++) {
+            idxConsumer.accept(parent.get(j));
+        }
     }
 
 
@@ -138,11 +416,6 @@ final class ValIdx implements Comparable<ValIdx> {
     }
 
 
-    private void shiftRightInSeq(int shift) {
-        innerIdx += shift;
-    }
-
-
     @Override
     public int compareTo(ValIdx o) {
         return Integer.compare(innerIdx, o.innerIdx);
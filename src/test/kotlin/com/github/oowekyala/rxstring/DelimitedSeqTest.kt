@@ -6,6 +6,8 @@ import io.kotlintest.shouldBe
 import io.kotlintest.specs.FunSpec
 import javafx.collections.FXCollections
 import javafx.collections.ObservableList
+import org.reactfx.value.Val
+import org.reactfx.value.Var
 import io.kotlintest.shouldBe as kotlintestShouldBe
 
 /**
@@ -46,6 +48,9 @@ class DelimitedSeqTest : FunSpec() {
         "[15]".isValueAfter("remove fst") { it.removeAt(0) }
         "[]".isValueAfter("remove to empty", listOf(1)) { it.removeAt(0) }
         "[10,12]".isValueAfter("remove mid", listOf(10, 11, 12)) { it.removeAt(1) }
+        "[12]".isValueAfter("remove fst range", listOf(10, 11, 12)) { it.remove(0, 2) }
+        "[10,13]".isValueAfter("remove mid range", listOf(10, 11, 12, 13)) { it.remove(1, 3) }
+        "[10]".isValueAfter("remove last range", listOf(10, 11, 12)) { it.remove(1, 3) }
 
         "[2,15]".isValueAfter("set fst") { it[0] = 2 }
         "[10,2]".isValueAfter("set last") { it[1] = 2 }
@@ -60,6 +65,120 @@ class DelimitedSeqTest : FunSpec() {
         "[4]".isValueAfter("add to empty", listOf()) { it += 4 }
         "[4,5,6]".isValueAfter("addAll to empty", listOf()) { it.addAll(4, 5, 6) }
 
+        test("Test delimiters are kept in sync with the first element") {
+            val t = lt.toBoundTemplate(DContext(listOf(10, 15)))
+            val mirror = StringBuilder()
+            t.addReplaceHandler(mirrorChanges(mirror))
+
+            fun check(expected: String) {
+                t.value shouldBe expected
+                mirror.toString() shouldBe expected
+            }
+
+            t.dataContext.nums.add(0, 2)
+            check("[2,10,15]")
+            t.dataContext.nums.addAll(0, listOf(0, 1))
+            check("[0,1,2,10,15]")
+            t.dataContext.nums.remove(0, 3)
+            check("[10,15]")
+            t.dataContext.nums.removeAt(0)
+            check("[15]")
+            t.dataContext.nums.setAll(1, 2)
+            check("[1,2]")
+            t.dataContext.nums.clear()
+            check("[]")
+            t.dataContext.nums.addAll(3, 4)
+            check("[3,4]")
+        }
+
+        test("Test the list view of a delimited renderer follows range changes") {
+            // templates write delimiters as text, this view is only built by calling apply directly
+            val items = FXCollections.observableArrayList<Val<Int>>(listOf(10, 11, 12, 13).map { Val.constant(it) })
+            val view = delimited("[", "]", ",", asString<Int>()).apply(LiveTemplate.newBuilder<Any>(), items)
+            val mirror = ArrayList<String>()
+            view.observeChanges { ch ->
+                ch.modifications.forEach {
+                    mirror.subList(it.from, it.from + it.removedSize).clear()
+                    mirror.addAll(it.from, it.addedSubList.map { it.value })
+                }
+            }
+            mirror += view.map { it.value }
+
+            fun check(expected: String) {
+                view.joinToString("") { it.value } shouldBe expected
+                mirror.joinToString("") shouldBe expected
+            }
+
+            check("[10,11,12,13]")
+            items.remove(1, 3)
+            check("[10,13]")
+            items.addAll(0, listOf(Val.constant(1), Val.constant(2)))
+            check("[1,2,10,13]")
+            items.remove(2, 4)
+            check("[1,2]")
+            items[0] = Val.constant(0)
+            check("[0,2]")
+            items.remove(0, 2)
+            check("[]")
+            items.add(Val.constant(3))
+            check("[3]")
+            items.addAll(Val.constant(4), Val.constant(5))
+            check("[3,4,5]")
+            items.removeAt(0)
+            check("[4,5]")
+            items.setAll(listOf(6, 7, 8).map { Val.constant(it) })
+            check("[6,7,8]")
+        }
+
+        test("Test items of a delimited sequence are updated after their delimiter") {
+
+            class Item(n: String) {
+                val name = Var.newSimpleVar(n)
+            }
+
+            class ItemsContext(vararg ns: String) {
+                val items: ObservableList<Item> = FXCollections.observableArrayList(ns.map { Item(it) })
+            }
+
+            val t = LiveTemplate.newBuilder<ItemsContext>()
+                    .bindSeq({ it.items }, delimited("[", "]", ", ", ItemRenderer.templated<Item> { it.bind { it.name } }))
+                    .toBoundTemplate(ItemsContext("a", "b", "c"))
+
+            val mirror = StringBuilder()
+            t.addReplaceHandler(mirrorChanges(mirror))
+
+            t.dataContext.items[1].name.value = "bb"
+            t.value shouldBe "[a, bb, c]"
+            t.dataContext.items.removeAt(0)
+            t.dataContext.items[0].name.value = "x"
+            t.value shouldBe "[x, c]"
+            mirror.toString() shouldBe t.value
+        }
+
+        test("Test only constant empty items are filtered out") {
+
+            class NumContext(vararg ns: Int) {
+                val nums: ObservableList<Int> = FXCollections.observableArrayList(ns.toList())
+            }
+
+            val render: (Int) -> String = { if (it == 0) "" else it.toString() }
+
+            val pure = LiveTemplate.newBuilder<NumContext>()
+                    .bindSeq({ it.nums }, delimited("[", "]", ",", ItemRenderer.pure<Int>(render)))
+                    .toBoundTemplate(NumContext(1, 0, 2))
+
+            pure.value shouldBe "[1,2]"
+            pure.dataContext.nums.add(1, 0)
+            pure.dataContext.nums.add(3)
+            pure.value shouldBe "[1,2,3]"
+
+            val mapped = LiveTemplate.newBuilder<NumContext>()
+                    .bindSeq({ it.nums }, delimited("[", "]", ",", asString<Int>(render)))
+                    .toBoundTemplate(NumContext(1, 0, 2))
+
+            mapped.value shouldBe "[1,,2]"
+        }
+
 
     }
 }
\ No newline at end of file
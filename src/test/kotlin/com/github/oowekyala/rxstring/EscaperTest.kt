@@ -0,0 +1,122 @@
+package com.github.oowekyala.rxstring
+
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.FunSpec
+import org.reactfx.value.Var
+
+/**
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class EscaperTest : FunSpec({
+
+    test("Test built-in escapers") {
+
+        Escaper.html().apply("<a href=\"x\">Tom & Jerry's</a>") shouldBe "&lt;a href=&quot;x&quot;&gt;Tom &amp; Jerry&#39;s&lt;/a&gt;"
+        Escaper.xml().apply("'a' < \"b\" & c") shouldBe "&apos;a&apos; &lt; &quot;b&quot; &amp; c"
+        Escaper.json().apply("say \"hi\"\\\n\t\u0001é") shouldBe "say \\\"hi\\\"\\\\\\n\\t\\u0001é"
+    }
+
+    test("Test strings that need no escaping are not copied") {
+
+        val s = String(charArrayOf('a', 'b', 'é', '€'))
+
+        (Escaper.html().apply(s) === s) shouldBe true
+        Escaper.html().indexOfEscaped("ab<c", 0, 4) shouldBe 2
+        Escaper.html().indexOfEscaped("ab<c", 3, 4) shouldBe -1
+        Escaper.html().apply(null) shouldBe null
+    }
+
+    test("Test escaping a range into a buffer") {
+
+        val out = StringBuilder("[")
+        Escaper.xml().escapeTo("a<b>c", 1, 4, out)
+        out.toString() shouldBe "[&lt;b&gt;"
+    }
+
+    test("Test escapers as default escape function") {
+
+        class DContext {
+            val name = Var.newSimpleVar("a & b")
+        }
+
+        val lt = LiveTemplate.newBuilder<DContext>()
+                .withDefaultEscape(Escaper.xml())
+                .append("<top name='").bind { it.name }.append("'/>")
+                .toBoundTemplate(DContext())
+
+        lt.value shouldBe "<top name='a &amp; b'/>"
+
+        lt.dataContext.name.value = "<'>"
+        lt.value shouldBe "<top name='&lt;&apos;&gt;'/>"
+    }
+
+    test("Test changes of escaped values are minimal edits") {
+
+        class DContext {
+            val text = Var.newSimpleVar("a<b & c>d")
+        }
+
+        val lt = LiveTemplate.newBuilder<DContext>()
+                .withDefaultEscape(Escaper.html())
+                .append("[").bind { it.text }.append("]")
+                .toBoundTemplate(DContext())
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        lt.dataContext.text.value = "a<b | c>d"
+        lt.value shouldBe "[a&lt;b | c&gt;d]"
+        events shouldBe listOf(ReplaceEvent(8, 13, "|"))
+        events.clear()
+
+        lt.dataContext.text.value = "a<b | \"c\">d"
+        events shouldBe listOf(ReplaceEvent(10, 11, "&quot;c&quot;"))
+        lt.value shouldBe "[a&lt;b | &quot;c&quot;&gt;d]"
+
+        for (text in listOf("", "<<", "x<<y", "&", "&&&", null, "a&b")) {
+            lt.dataContext.text.value = text
+            lt.value shouldBe "[" + Escaper.html().apply(text ?: "") + "]"
+            mirror.toString() shouldBe lt.value
+        }
+    }
+
+    test("Test escaped values are escaped once, into the text, when the template is bound") {
+
+        var copies = 0
+        val counting = object : Escaper {
+            override fun indexOfEscaped(input: CharSequence, start: Int, end: Int): Int =
+                    Escaper.html().indexOfEscaped(input, start, end)
+
+            override fun escapeTo(input: CharSequence, start: Int, end: Int, out: java.lang.StringBuilder) =
+                    Escaper.html().escapeTo(input, start, end, out)
+
+            override fun apply(input: String?): String? {
+                copies++
+                return Escaper.html().apply(input)
+            }
+        }
+
+        class DContext {
+            val text = Var.newSimpleVar("a<b & c>d")
+        }
+
+        val lt = LiveTemplate.newBuilder<DContext>()
+                .withDefaultEscape(counting)
+                .append("[").bind { it.text }.append("]")
+                .toBoundTemplate(DContext())
+
+        lt.value shouldBe "[a&lt;b &amp; c&gt;d]"
+        copies shouldBe 0
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        lt.dataContext.text.value = "a<b | c>d"
+        lt.value shouldBe "[a&lt;b | c&gt;d]"
+        mirror.toString() shouldBe lt.value
+    }
+})
@@ -0,0 +1,94 @@
+package com.github.oowekyala.rxstring
+
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.FunSpec
+import javafx.collections.FXCollections
+import org.reactfx.value.Var
+
+/**
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class GroupedSeqTest : FunSpec({
+
+    class Item(val name: String, group: String) {
+        val group = Var.newSimpleVar(group)
+    }
+
+    class DContext(vararg items: Item) {
+        val items = FXCollections.observableArrayList(items.toList())
+    }
+
+    fun groupedTemplate() =
+            LiveTemplate
+                    .newBuilder<DContext>()
+                    .append("[")
+                    .bindGroupedSeq({ it.items }, { it.group }, ItemRenderer.asString<String> { "($it)" }, ItemRenderer.asString<Item> { it.name })
+                    .append("]")
+                    .toTemplate()
+
+    test("Test items are displayed in groups") {
+
+        val lt = groupedTemplate()
+        lt.dataContext = DContext(Item("a", "A"), Item("b", "B"), Item("c", "A"))
+
+        lt.value shouldBe "[(A)ac(B)b]"
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        lt.dataContext.items.add(Item("d", "B"))
+        lt.dataContext.items.add(0, Item("e", "C"))
+        lt.value shouldBe "[(A)ac(B)bd(C)e]"
+        mirror.toString() shouldBe lt.value
+
+        // the group goes away with its last item
+        lt.dataContext.items.removeAt(2)
+        lt.dataContext.items.removeAt(3)
+        lt.value shouldBe "[(A)ac(C)e]"
+        mirror.toString() shouldBe lt.value
+
+        lt.dataContext.items.clear()
+        lt.value shouldBe "[]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test items move to their new group when their key changes") {
+
+        val lt = groupedTemplate()
+        lt.dataContext = DContext(Item("a", "A"), Item("b", "B"), Item("c", "A"))
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        val (a, b) = lt.dataContext.items
+
+        a.group.value = "B"
+        lt.value shouldBe "[(A)c(B)ba]"
+        mirror.toString() shouldBe lt.value
+        events shouldBe listOf(ReplaceEvent(4, 5, ""), ReplaceEvent(9, 9, "a"))
+
+        // creates a group and deletes one
+        b.group.value = "D"
+        a.group.value = "A"
+        lt.value shouldBe "[(A)ca(D)b]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test rebinding a grouped sequence") {
+
+        val lt = groupedTemplate()
+        lt.dataContext = DContext(Item("a", "A"))
+
+        val old = lt.dataContext
+        lt.dataContext = DContext(Item("x", "X"), Item("y", "X"))
+        lt.value shouldBe "[(X)xy]"
+
+        old.items[0].group.value = "B"
+        old.items.clear()
+        lt.value shouldBe "[(X)xy]"
+    }
+})
@@ -0,0 +1,206 @@
+package com.github.oowekyala.rxstring
+
+import io.kotlintest.matchers.haveSize
+import io.kotlintest.should
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.FunSpec
+import javafx.collections.FXCollections
+import org.reactfx.value.Var
+
+/**
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class KeyedSeqTest : FunSpec({
+
+    class Item(val id: Int, n: String = "$id") {
+        val name = Var.newSimpleVar(n)
+    }
+
+    class DContext(vararg ids: Int) {
+        val items = FXCollections.observableArrayList(ids.map { Item(it) })
+    }
+
+    fun keyedTemplate() =
+            LiveTemplate
+                    .newBuilder<DContext>()
+                    .append("[")
+                    .bindSeq({ it.items }, { it.id }, ItemRenderer.templated<Item> {
+                        it.append("<").bind { it.name }.append(">")
+                    })
+                    .append("]")
+                    .toTemplate()
+
+    test("Test moved items move their text") {
+
+        val lt = keyedTemplate()
+        lt.dataContext = DContext(1, 2, 3, 4)
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        val (a, b, c, d) = lt.dataContext.items
+        lt.dataContext.items.setAll(b, c, d, a)
+
+        lt.value shouldBe "[<2><3><4><1>]"
+        mirror.toString() shouldBe lt.value
+        events shouldBe listOf(ReplaceEvent(1, 4, ""), ReplaceEvent(10, 10, "<1>"))
+
+        // the moved element is still bound to its item
+        a.name.value = "z"
+        lt.value shouldBe "[<2><3><4><z>]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test items replaced by items with the same key are rebound in place") {
+
+        val lt = keyedTemplate()
+        lt.dataContext = DContext(1, 2, 3)
+
+        val events = mutableListOf<ReplaceEvent>()
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        lt.dataContext.items.setAll(Item(1), Item(2, "two"), Item(3))
+
+        lt.value shouldBe "[<1><two><3>]"
+        events should haveSize(1)
+        events[0] shouldBe ReplaceEvent(5, 6, "two")
+    }
+
+    test("Test replacing an item only touches its element") {
+
+        val lt = keyedTemplate()
+        lt.dataContext = DContext(1, 2, 3, 4)
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        val (a, _, c, d) = lt.dataContext.items
+        lt.dataContext.items[1] = Item(5)
+
+        lt.value shouldBe "[<1><5><3><4>]"
+        mirror.toString() shouldBe lt.value
+        events shouldBe listOf(ReplaceEvent(4, 7, ""), ReplaceEvent(4, 4, "<5>"))
+        events.clear()
+
+        // same key, rebound in place
+        lt.dataContext.items[1] = Item(5, "five")
+
+        lt.value shouldBe "[<1><five><3><4>]"
+        mirror.toString() shouldBe lt.value
+        events shouldBe listOf(ReplaceEvent(5, 6, "five"))
+
+        // the other elements are still bound to their items
+        a.name.value = "a"
+        c.name.value = "c"
+        d.name.value = "d"
+        lt.value shouldBe "[<a><five><c><d>]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test sorting and mixed changes are reconciled") {
+
+        val lt = keyedTemplate()
+        lt.dataContext = DContext(5, 3, 1, 4, 2)
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        FXCollections.sort(lt.dataContext.items, compareBy { it.id })
+        lt.value shouldBe "[<1><2><3><4><5>]"
+        mirror.toString() shouldBe lt.value
+
+        lt.dataContext.items.setAll(Item(6), Item(4), Item(2), Item(7))
+        lt.value shouldBe "[<6><4><2><7>]"
+        mirror.toString() shouldBe lt.value
+
+        lt.dataContext.items.removeAt(1)
+        lt.dataContext.items.add(0, Item(8))
+        lt.value shouldBe "[<8><6><2><7>]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test rebinding the data context reconciles by key") {
+
+        val lt = keyedTemplate()
+        lt.dataContext = DContext(1, 2, 3)
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        lt.dataContext = DContext(1, 2, 3, 4)
+
+        lt.value shouldBe "[<1><2><3><4>]"
+        mirror.toString() shouldBe lt.value
+        events shouldBe listOf(ReplaceEvent(10, 10, "<4>"))
+    }
+
+    test("Test sorting rewrites the block or moves elements, whichever is cheaper") {
+
+        val lt = keyedTemplate()
+        lt.dataContext = DContext(5, 3, 1, 4, 2)
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        FXCollections.sort(lt.dataContext.items, compareBy { it.id })
+
+        lt.value shouldBe "[<1><2><3><4><5>]"
+        mirror.toString() shouldBe lt.value
+        // common prefix and suffix are trimmed by the handlers
+        events shouldBe listOf(ReplaceEvent(2, 15, "1><2><3><4><5"))
+        events.clear()
+
+        FXCollections.sort(lt.dataContext.items, compareBy { (it.id + 1) % 5 })
+
+        lt.value shouldBe "[<4><5><1><2><3>]"
+        mirror.toString() shouldBe lt.value
+        events should haveSize(4)
+
+        // elements are still bound to their items
+        lt.dataContext.items[0].name.value = "z"
+        lt.value shouldBe "[<z><5><1><2><3>]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test added items are inserted in one block") {
+
+        val lt = keyedTemplate()
+        lt.dataContext = DContext(1, 4)
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        lt.dataContext.items.addAll(1, listOf(Item(2), Item(3)))
+
+        lt.value shouldBe "[<1><2><3><4>]"
+        mirror.toString() shouldBe lt.value
+        events shouldBe listOf(ReplaceEvent(4, 4, "<2><3>"))
+        events.clear()
+
+        lt.dataContext.items.setAll(Item(0), Item(1), Item(5), Item(6), Item(4))
+
+        lt.value shouldBe "[<0><1><5><6><4>]"
+        mirror.toString() shouldBe lt.value
+
+        lt.dataContext.items[2].name.value = "z"
+        lt.value shouldBe "[<0><1><z><6><4>]"
+        mirror.toString() shouldBe lt.value
+    }
+})
@@ -2,10 +2,18 @@ package com.github.oowekyala.rxstring
 
 import com.github.oowekyala.rxstring.ItemRenderer.*
 import io.kotlintest.shouldBe
+import io.kotlintest.shouldThrow
 import io.kotlintest.specs.FunSpec
+import javafx.beans.binding.Bindings
+import javafx.beans.property.SimpleDoubleProperty
+import javafx.beans.property.SimpleIntegerProperty
+import javafx.beans.property.SimpleLongProperty
 import javafx.collections.FXCollections
 import org.reactfx.collection.LiveArrayList
 import org.reactfx.value.Var
+import java.util.concurrent.Callable
+import java.util.function.Consumer
+import java.util.function.Function
 
 /**
  * @author Clément Fournier
@@ -137,6 +145,53 @@ class LiveTemplateBuilderTest : FunSpec({
 
 
 
+    test("Test rendered sub-templates are specified when rendering") {
+        class DContext {
+            val name = Var.newSimpleVar("sub")
+        }
+
+        var calls = 0
+        val builder = LiveTemplate.newBuilder<DContext>()
+                .append("<")
+                .renderTemplate({ it }) {
+                    calls++
+                    it.bind { it.name }
+                }
+
+        // inlined into the enclosing template
+        calls shouldBe 1
+
+        val lt = builder.append(">").toBoundTemplate(DContext())
+        lt.value shouldBe "<sub>"
+        calls shouldBe 1
+    }
+
+
+    test("Test constant items are escaped once, when the template is bound") {
+        class DContext {
+            val items = FXCollections.observableArrayList("a", "", "b")
+        }
+
+        var calls = 0
+        val lt =
+                LiveTemplate.newBuilder<DContext>()
+                        .withDefaultEscape { calls++; it.toUpperCase() }
+                        .append("<").bindSeq({ it.items }, ItemRenderer.asString<String>()).append(">")
+                        .toTemplate()
+
+        calls shouldBe 0
+
+        // each text is read when it's inserted, then again when it's subscribed to
+        lt.dataContext = DContext()
+        lt.value shouldBe "<AB>"
+        calls shouldBe 3
+
+        lt.dataContext.items.add("c")
+        lt.value shouldBe "<ABC>"
+        calls shouldBe 4
+    }
+
+
     test("Test escape function inheritance with bind and bindTemplate") {
         class SubDContext {
             val name = Var.newSimpleVar("sub")
@@ -303,12 +358,181 @@ class LiveTemplateBuilderTest : FunSpec({
                         .append("<top nums='").bindSeq({ it.nums }, SeqRenderer.delimited("", "", ",", asString())).append("'/>")
                         .toBoundTemplate(DContext())
 
-        (lt as LiveTemplateImpl).totalSubscriptions().value shouldBe 5L
+        // the delimiters are not bound
+        (lt as LiveTemplateImpl).totalSubscriptions().value shouldBe 4L
 
     }
 
 
 
+    test("Test rendered sub-templates are inlined") {
+
+        class SubDContext(n: String) {
+            val name = Var.newSimpleVar(n)
+        }
+
+        class DContext(val sub: SubDContext?)
+
+        val a = SubDContext("a")
+
+        val lt =
+                LiveTemplate.newBuilder<DContext>()
+                        .append("[")
+                        .renderTemplate<SubDContext>({ it.sub }) { sub ->
+                            sub.append("<").bind { it.name }.append(">")
+                        }
+                        .append("]")
+                        .toBoundTemplate(DContext(a))
+
+        lt.value shouldBe "[<a>]"
+
+        a.name.value = "b"
+        lt.value shouldBe "[<b>]"
+
+        lt.dataContext = DContext(null)
+        lt.value shouldBe "[]"
+
+        lt.dataContext = DContext(SubDContext("c"))
+        lt.value shouldBe "[<c>]"
+
+        a.name.value = "z"
+        lt.value shouldBe "[<c>]"
+    }
+
+    test("Test sub-templates inlined with the identity merge their constants") {
+
+        class DContext {
+            val name = Var.newSimpleVar("foo")
+        }
+
+        val lt =
+                LiveTemplate.newBuilder<DContext>()
+                        .append("[")
+                        .renderTemplate(Function.identity<DContext>(), Consumer { sub ->
+                            sub.append("a").bind { it.name }.append("b")
+                        })
+                        .append("]")
+                        .toBoundTemplate(DContext())
+
+        lt.value shouldBe "[afoob]"
+        (lt as LiveTemplateImpl).totalSubscriptions().value shouldBe 3L
+
+        lt.dataContext.name.value = "bar"
+        lt.value shouldBe "[abarb]"
+    }
+
+    test("Test bind property by name") {
+
+        class DContext {
+            private val name = Var.newSimpleVar("foo")
+            val num = Var.newSimpleVar(4)
+            val plain = "plain"
+
+            fun nameProperty() = name
+        }
+
+        val lt =
+                LiveTemplate.newBuilder<DContext>()
+                        .append("<").bindProperty("name").append(" ").bindProperty<Int>("num", asString { (it * 2).toString() }).append(">")
+                        .toBoundTemplate(DContext())
+
+        lt.value shouldBe "<foo 8>"
+
+        lt.dataContext.nameProperty().value = "bar"
+        lt.dataContext.num.value = 5
+        lt.value shouldBe "<bar 10>"
+
+        shouldThrow<IllegalArgumentException> {
+            LiveTemplate.newBuilder<DContext>().bindProperty("plain").toBoundTemplate(DContext())
+        }
+
+        shouldThrow<IllegalArgumentException> {
+            LiveTemplate.newBuilder<DContext>().bindProperty("nope").toBoundTemplate(DContext())
+        }
+    }
+
+    test("Test plans record the sizes of their bound instances") {
+
+        class DContext(vararg n: Int) {
+            val nums = FXCollections.observableArrayList(n.toList())
+        }
+
+        val plan = (LiveTemplate.newBuilder<DContext>()
+                .append("<").bindSeq({ it.nums }, SeqRenderer.delimited("", "", ",", asString())).append(">")
+                as LiveTemplateBuilderImpl).toPlan()
+
+        plan.textLengthHint() shouldBe 0
+
+        LiveTemplateImpl(plan).dataContext = DContext(1, 2, 3, 4, 5)
+
+        plan.textLengthHint() shouldBe "<1,2,3,4,5>".length
+        plan.sequenceSizeHint(1) shouldBe 5
+
+        LiveTemplateImpl(plan).dataContext = DContext(1)
+
+        // moves towards the new size but stays on the larger side
+        plan.textLengthHint() shouldBe 9
+        plan.sequenceSizeHint(1) shouldBe 4
+    }
+
+    test("Test sorting a bound sequence") {
+
+        class DContext {
+            val nums = FXCollections.observableArrayList(4, 1, 3, 2)
+        }
+
+        val lt =
+                LiveTemplate.newBuilder<DContext>()
+                        .append("[").bindSeq({ it.nums }, SeqRenderer.delimited("", "", ",", asString())).append("]")
+                        .toBoundTemplate(DContext())
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        FXCollections.sort(lt.dataContext.nums)
+
+        lt.value shouldBe "[1,2,3,4]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test sorting a large bound sequence moves the rendered items") {
+
+        class DContext {
+            val nums = FXCollections.observableArrayList((0 until 1000).shuffled(java.util.Random(42)))
+        }
+
+        val calls = java.util.concurrent.atomic.AtomicInteger()
+
+        val lt = LiveTemplate.newBuilder<DContext>()
+                .append("[")
+                .bindSeq({ it.nums }, SeqRenderer.delimited("", "", ",", pure<Int> { calls.incrementAndGet(); if (it % 10 == 0) "" else "$it" }))
+                .append("]")
+                .toBoundTemplate(DContext())
+
+        calls.get() shouldBe 1000
+
+        // the permuted range is rewritten in one replacement, which isn't diffed
+        lt.isUseDiffMatchPatchStrategy = false
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        FXCollections.sort(lt.dataContext.nums)
+
+        lt.value shouldBe (0 until 1000).filter { it % 10 != 0 }.joinToString(",", "[", "]")
+        mirror.toString() shouldBe lt.value
+        events.size shouldBe 1
+        calls.get() shouldBe 1000
+
+        FXCollections.sort(lt.dataContext.nums, compareByDescending { it })
+
+        lt.value shouldBe (999 downTo 0).filter { it % 10 != 0 }.joinToString(",", "[", "]")
+        mirror.toString() shouldBe lt.value
+        calls.get() shouldBe 1000
+    }
+
     test("Test surrounded renderer bind") {
 
         class DContext {
@@ -584,4 +808,100 @@ class LiveTemplateBuilderTest : FunSpec({
         """.trimIndent()
 
     }
+
+    test("Test capped sequences only render their first items") {
+
+        class DContext {
+            val nums = FXCollections.observableArrayList((0 until 100000).toList())
+        }
+
+        val lt = LiveTemplate.newBuilder<DContext>()
+                .append("[")
+                .bindCappedSeq({ it.nums }, 3, asString { "$it," })
+                .append("]")
+                .toBoundTemplate(DContext())
+
+        lt.value shouldBe "[0,1,2,… and 99997 more]"
+        // the items, the summary and two constants
+        (lt as LiveTemplateImpl).totalSubscriptions().value shouldBe 6L
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        lt.dataContext.nums.removeAt(1)
+        lt.value shouldBe "[0,2,3,… and 99996 more]"
+        lt.dataContext.nums.remove(3, 99999)
+        lt.value shouldBe "[0,2,3,]"
+        lt.dataContext.nums.add(0, -1)
+        lt.value shouldBe "[-1,0,2,… and 1 more]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test pure renderers render each item once") {
+
+        class DContext {
+            val nums = FXCollections.observableArrayList((0 until 1000).toList())
+        }
+
+        val calls = java.util.concurrent.atomic.AtomicInteger()
+
+        val lt = LiveTemplate.newBuilder<DContext>()
+                .withDefaultEscape { it.replace("<", "&lt;") }
+                .append("[")
+                .bindSeq({ it.nums }, pure<Int> { calls.incrementAndGet(); "<$it," })
+                .append("]")
+                .toBoundTemplate(DContext())
+
+        lt.value shouldBe (0 until 1000).joinToString("", "[", "]") { "&lt;$it," }
+        calls.get() shouldBe 1000
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        lt.dataContext.nums.addAll(500, (1000 until 2000).toList())
+        lt.dataContext.nums.removeAt(0)
+        lt.value shouldBe lt.dataContext.nums.joinToString("", "[", "]") { "&lt;$it," }
+        mirror.toString() shouldBe lt.value
+        calls.get() shouldBe 2000
+    }
+
+    test("Test primitive bindings format only changed values") {
+
+        class DContext(n: Int) {
+            val count = SimpleIntegerProperty(n)
+            val total = SimpleLongProperty(10000000000L)
+            val ratio = SimpleDoubleProperty(0.5)
+            // invalidated when the count changes, but only changes every other time
+            val half = Bindings.createIntegerBinding(Callable { count.get() / 2 }, count)
+        }
+
+        val lt = LiveTemplate.newBuilder<DContext>()
+                .bindInt { it.count }.append(" ")
+                .bindLong { it.total }.append(" ")
+                .bindDouble { it.ratio }.append(" ")
+                .bindInt { it.half }
+                .toBoundTemplate(DContext(2))
+
+        lt.value shouldBe "2 10000000000 0.5 1"
+
+        val events = mutableListOf<ReplaceEvent>()
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        lt.dataContext.count.set(3)
+        events shouldBe listOf(ReplaceEvent(0, 1, "3"))
+        events.clear()
+
+        lt.dataContext.ratio.set(-0.0)
+        lt.dataContext.total.set(-1)
+        lt.value shouldBe "3 -1 -0.0 1"
+        events.clear()
+
+        lt.dataContext.ratio.set(-0.0)
+        events shouldBe emptyList<ReplaceEvent>()
+
+        lt.dataContext = DContext(42)
+        lt.value shouldBe "42 10000000000 0.5 21"
+    }
+
 })
\ No newline at end of file
@@ -0,0 +1,207 @@
+package com.github.oowekyala.rxstring
+
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.FunSpec
+import javafx.beans.value.ObservableValue
+import javafx.collections.FXCollections
+import org.reactfx.Subscription
+import org.reactfx.value.Val
+import org.reactfx.value.Var
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class ReactfxExtensionsTest : FunSpec({
+
+    test("Test dynamic subscriptions follow permutations") {
+
+        val list = FXCollections.observableArrayList(3, 1, 4, 2)
+        val unsubscribed = mutableListOf<Int>()
+
+        ReactfxExtensions.dynamic(list) { elt, _ -> Subscription { unsubscribed += elt } }
+
+        FXCollections.sort(list)
+        list shouldBe listOf(1, 2, 3, 4)
+
+        list.removeAt(0)
+        list.removeAt(2)
+
+        unsubscribed shouldBe listOf(1, 4)
+    }
+
+    test("Test recombined subscriptions follow permutations") {
+
+        val list = FXCollections.observableArrayList("c", "a", "b")
+        val unsubscribed = mutableListOf<String>()
+
+        fun sub(elt: String): ReactfxExtensions.RebindSubscription<String> =
+                ReactfxExtensions.RebindSubscription.make({ unsubscribed += elt }) { sub(it) }
+
+        ReactfxExtensions.dynamicRecombine(list) { elt, _ -> sub(elt) }
+
+        FXCollections.sort(list)
+        list.removeAt(2)
+
+        unsubscribed shouldBe listOf("c")
+    }
+
+    test("Test capped views promote and demote elements at the boundary") {
+
+        val list = FXCollections.observableArrayList(1, 2, 3, 4)
+        val capped = ReactfxExtensions.capped(list, 2)
+        val mirror = ArrayList<Int>()
+        val mods = ArrayList<Triple<Int, List<Int>, List<Int>>>()
+        capped.observeChanges { ch ->
+            ch.modifications.forEach {
+                mods.add(Triple(it.from, ArrayList(it.removed), ArrayList(it.addedSubList)))
+                mirror.subList(it.from, it.from + it.removedSize).clear()
+                mirror.addAll(it.from, it.addedSubList)
+            }
+        }
+        mirror += capped
+
+        list.removeAt(0)
+        capped shouldBe listOf(2, 3)
+        mirror shouldBe capped
+        mods shouldBe listOf(Triple(0, listOf(1), emptyList<Int>()), Triple(1, emptyList<Int>(), listOf(3)))
+        mods.clear()
+
+        list.add(0, 0)
+        capped shouldBe listOf(0, 2)
+        mirror shouldBe capped
+        mods shouldBe listOf(Triple(0, emptyList<Int>(), listOf(0)), Triple(2, listOf(3), emptyList<Int>()))
+        mods.clear()
+
+        list.add(10)
+        list[3] = 5
+        capped shouldBe listOf(0, 2)
+        mirror shouldBe capped
+
+        list[1] = 1
+        capped shouldBe listOf(0, 1)
+        mirror shouldBe capped
+
+        // several modifications in one change
+        list.setAll(0, 1, 2, 3, 4, 5)
+        val bigCap = ReactfxExtensions.capped(list, 4)
+        val bigMirror = ArrayList<Int>()
+        bigCap.observeChanges { ch ->
+            ch.modifications.forEach {
+                bigMirror.subList(it.from, it.from + it.removedSize).clear()
+                bigMirror.addAll(it.from, it.addedSubList)
+            }
+        }
+        bigMirror += bigCap
+        list.removeAll(0, 2, 5)
+        bigCap shouldBe listOf(1, 3, 4)
+        bigMirror shouldBe bigCap
+
+        list.clear()
+        capped shouldBe listOf<Int>()
+        mirror shouldBe capped
+    }
+
+
+    test("Test parallel mapped views map each element once") {
+
+        val list = FXCollections.observableArrayList((1..1000).toList())
+        val calls = AtomicInteger()
+        val mapped = ReactfxExtensions.parallelMap(list) { calls.incrementAndGet(); it * 2 }
+        val mirror = ArrayList<Int>()
+        mapped.observeChanges { ch ->
+            ch.modifications.forEach {
+                mirror.subList(it.from, it.from + it.removedSize).clear()
+                mirror.addAll(it.from, it.addedSubList)
+            }
+        }
+        mirror += mapped
+
+        mirror shouldBe (1..1000).map { it * 2 }
+        calls.get() shouldBe 1000
+
+        list.addAll(0, (1..500).toList())
+        list.remove(1000, 1200)
+        list.sort()
+        mirror shouldBe list.map { it * 2 }
+        mapped shouldBe mirror
+        calls.get() shouldBe 1500
+    }
+
+
+    test("Test flattened vals report element changes at their current index") {
+
+        val a = Var.newSimpleVar("a")
+        val b = Var.newSimpleVar("b")
+        val list = FXCollections.observableArrayList<ObservableValue<String>>(a, b)
+        val flat = ReactfxExtensions.flattenVals(list)
+        val mirror = ArrayList<String>()
+        val changes = mutableListOf<Any>()
+        flat.observeQuasiChanges { ch ->
+            changes.add(ch)
+            ch.modifications.forEach {
+                mirror.subList(it.from, it.from + it.removedSize).clear()
+                mirror.addAll(it.from, flat.subList(it.from, it.to))
+            }
+        }
+        mirror += flat
+
+        list.add(0, Var.newSimpleVar("c"))
+        list.reverse()
+        b.value = "bb"
+        a.value = "aa"
+        mirror shouldBe listOf("bb", "aa", "c")
+        flat shouldBe mirror
+
+        list.remove(b)
+        b.value = "x"
+        mirror shouldBe listOf("aa", "c")
+    }
+
+    test("Test flattened vals can be observed by a suspended list") {
+
+        val a = Var.newSimpleVar("a")
+        val b = Var.newSimpleVar("b")
+        val list = FXCollections.observableArrayList<ObservableValue<String>>(a, b)
+        val suspendable = ReactfxExtensions.flattenVals(list).suspendable()
+        val mirror = ArrayList<String>()
+        suspendable.observeQuasiChanges { ch ->
+            ch.modifications.forEach {
+                mirror.subList(it.from, it.from + it.removedSize).clear()
+                mirror.addAll(it.from, suspendable.subList(it.from, it.to))
+            }
+        }
+        val removed = ArrayList<List<String>>()
+        suspendable.observeChanges { ch -> ch.modifications.forEach { removed.add(ArrayList(it.removed)) } }
+        mirror += suspendable
+
+        // the accumulated changes must not be altered by the later ones
+        suspendable.suspendWhile {
+            b.value = "b1"
+            list.add(0, Var.newSimpleVar("z"))
+            b.value = "b2"
+        }
+
+        suspendable shouldBe listOf("z", "a", "b2")
+        mirror shouldBe suspendable
+        // [a, b] -> [z, a, b2]
+        removed shouldBe listOf(emptyList(), listOf("b"))
+    }
+
+    test("Test mapping a constant is lazy") {
+
+        var calls = 0
+        val mapped = ReactfxExtensions.mapPreserveConst(Val.constant("a")) { calls++; "$it!" }
+
+        ReactfxExtensions.isConst(mapped) shouldBe true
+        calls shouldBe 0
+
+        mapped.value shouldBe "a!"
+        mapped.value shouldBe "a!"
+        calls shouldBe 1
+
+        ReactfxExtensions.mapPreserveConst(Val.constant<String>(null)) { calls++; it }.value shouldBe null
+        calls shouldBe 1
+    }
+})
@@ -5,8 +5,13 @@ import io.kotlintest.matchers.haveSize
 import io.kotlintest.should
 import io.kotlintest.shouldBe
 import io.kotlintest.specs.FunSpec
+import javafx.beans.InvalidationListener
+import javafx.beans.property.SimpleIntegerProperty
+import javafx.beans.property.SimpleStringProperty
+import javafx.beans.value.ChangeListener
 import javafx.collections.FXCollections
 import org.reactfx.value.Var
+import java.util.concurrent.Executor
 import java.util.logging.Logger
 
 /**
@@ -171,6 +176,209 @@ class ReplaceHandlerTest : FunSpec({
         extSb.toString() shouldBe ""
     }
 
+    test("Test prepared data context is swapped in with a single edit") {
+        class DContext(n: String) {
+            val name = Var.newSimpleVar(n)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("Foo[")
+                .bind { it.name }
+                .append("]bar")
+                .toBoundTemplate(DContext("MissingOverride"))
+
+        val events = mutableListOf<ReplaceEvent>()
+        lt.addReplaceHandler(recordEvents(events))
+
+        val swaps = mutableListOf<Runnable>()
+        val future = lt.prepareDataContext(DContext("MissingYou"), Executor { it.run() }, Executor { swaps += it })
+
+        // nothing is visible before the swap
+        lt.value shouldBe "Foo[MissingOverride]bar"
+        events should haveSize(1)
+
+        swaps should haveSize(1)
+        swaps[0].run()
+
+        future.get() shouldBe true
+        lt.value shouldBe "Foo[MissingYou]bar"
+        lt.dataContext.name.value shouldBe "MissingYou"
+        events should haveSize(2)
+        events.last() shouldBe ReplaceEvent(11, 19, "You")
+
+        lt.dataContext.name.value = "Missing"
+
+        lt.value shouldBe "Foo[Missing]bar"
+        events.last() shouldBe ReplaceEvent(11, 14, "")
+    }
+
+    test("Test prepared data context is only observed during the swap") {
+        class Name(n: String) : SimpleStringProperty(n) {
+            var listeners = 0
+
+            override fun addListener(listener: InvalidationListener) {
+                listeners++
+                super.addListener(listener)
+            }
+
+            override fun addListener(listener: ChangeListener<in String>) {
+                listeners++
+                super.addListener(listener)
+            }
+        }
+
+        class DContext(n: String, vararg subs: String) {
+            val name = Name(n)
+            val subs = FXCollections.observableArrayList(subs.map { Name(it) })
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("Foo[")
+                .bind { it.name }
+                .append("]")
+                .bindTemplatedSeq({ it.subs }) { sub ->
+                    sub.append("<").bind { it }.append(">")
+                }
+                .toBoundTemplate(DContext("MissingOverride", "a"))
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(recordEvents(events))
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        val ctx = DContext("MissingYou", "a", "b")
+        val renders = mutableListOf<Runnable>()
+        val swaps = mutableListOf<Runnable>()
+        val future = lt.prepareDataContext(ctx, Executor { renders += it }, Executor { swaps += it })
+
+        renders.forEach { it.run() }
+        ctx.name.listeners shouldBe 0
+        ctx.subs.map { it.listeners } shouldBe listOf(0, 0)
+
+        swaps.forEach { it.run() }
+        future.get() shouldBe true
+
+        lt.value shouldBe "Foo[MissingYou]<a><b>"
+        mirror.toString() shouldBe lt.value
+        events should haveSize(2)
+        (ctx.name.listeners > 0) shouldBe true
+
+        ctx.subs[1].value = "c"
+        lt.value shouldBe "Foo[MissingYou]<a><c>"
+    }
+
+    test("Test prepared texts are not rendered again during the swap") {
+        var renders = 0
+
+        class DContext(n: String, c: Int) {
+            val name = Var.newSimpleVar(n)
+            val count = SimpleIntegerProperty(c)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("Foo[")
+                .bind({ it.name }, ItemRenderer.asString<String> { renders++; it })
+                .append("](")
+                .bindInt { it.count }
+                .append(")")
+                .toBoundTemplate(DContext("MissingOverride", 1))
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(recordEvents(events))
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        val ctx = DContext("MissingYou", 2)
+        val renderTasks = mutableListOf<Runnable>()
+        val swaps = mutableListOf<Runnable>()
+        val future = lt.prepareDataContext(ctx, Executor { renderTasks += it }, Executor { swaps += it })
+
+        renders = 0
+        renderTasks.forEach { it.run() }
+        renders shouldBe 1
+
+        swaps.forEach { it.run() }
+        future.get() shouldBe true
+        renders shouldBe 1
+
+        lt.value shouldBe "Foo[MissingYou](2)"
+        mirror.toString() shouldBe lt.value
+        events should haveSize(2)
+
+        // the value is rendered once it changes
+        ctx.name.value = "Missing"
+        (renders > 1) shouldBe true
+        lt.value shouldBe "Foo[Missing](2)"
+
+        ctx.count.value = 3
+        lt.value shouldBe "Foo[Missing](3)"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test prepared texts are rendered again if the values changed before the swap") {
+        class DContext(n: String, c: Int) {
+            val name = Var.newSimpleVar(n)
+            val count = SimpleIntegerProperty(c)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("Foo[")
+                .bind { it.name }
+                .append("](")
+                .bindInt { it.count }
+                .append(")")
+                .toBoundTemplate(DContext("MissingOverride", 1))
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        val ctx = DContext("MissingYou", 2)
+        val swaps = mutableListOf<Runnable>()
+        val future = lt.prepareDataContext(ctx, Executor { it.run() }, Executor { swaps += it })
+
+        ctx.name.value = "Other"
+        ctx.count.value = 4
+        swaps.forEach { it.run() }
+        future.get() shouldBe true
+
+        lt.value shouldBe "Foo[Other](4)"
+        mirror.toString() shouldBe lt.value
+
+        ctx.name.value = "Missing"
+        lt.value shouldBe "Foo[Missing](4)"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test prepared data context is discarded if the context changed") {
+        class DContext(n: String) {
+            val name = Var.newSimpleVar(n)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("Foo[")
+                .bind { it.name }
+                .append("]bar")
+                .toBoundTemplate(DContext("MissingOverride"))
+
+        val events = mutableListOf<ReplaceEvent>()
+        lt.addReplaceHandler(recordEvents(events))
+
+        val swaps = mutableListOf<Runnable>()
+        val future = lt.prepareDataContext(DContext("MissingYou"), Executor { it.run() }, Executor { swaps += it })
+
+        lt.dataContext = DContext("Other")
+        swaps.forEach { it.run() }
+
+        future.get() shouldBe false
+        lt.value shouldBe "Foo[Other]bar"
+        lt.dataContext.name.value shouldBe "Other"
+    }
+
     test("A removed handler should not be executed") {
         class DContext {
             val name = Var.newSimpleVar("MissingOverride")
@@ -511,6 +719,48 @@ class ReplaceHandlerTest : FunSpec({
     }
 
 
+    test("Test rebinding the parent rebinds the nested template in place") {
+
+        class SubDContext(n: String) {
+            val name = Var.newSimpleVar(n)
+            val num = Var.newSimpleVar(4)
+        }
+
+        class DContext(n: String) {
+            val name = Var.newSimpleVar("top")
+            val sub = Var.newSimpleVar(SubDContext(n))
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("<top name='").bind { it.name }.appendLine("'>")
+                .bindTemplate({ it.sub }) { sub ->
+                    sub.append("<sub name='").bind { it.name }.append("' num='").bind { it.num }.appendLine("'/>")
+                }
+                .append("</top>")
+                .toBoundTemplate(DContext("sub"))
+
+        val events = mutableListOf<ReplaceEvent>()
+        lt.addReplaceHandler(recordEvents(events))
+
+        lt.dataContext = DContext("blorg")
+
+        lt.value shouldBe """
+            <top name='top'>
+            <sub name='blorg' num='4'/>
+            </top>
+        """.trimIndent()
+
+        events should haveSize(2)
+        events.last() shouldBe ReplaceEvent(28, 31, "blorg")
+
+        lt.dataContext.sub.value.num.value = 5
+
+        events should haveSize(3)
+        events.last() shouldBe ReplaceEvent(40, 41, "5")
+    }
+
+
     test("Test nested template sequence minimal change") {
 
         class SubDContext {
@@ -703,4 +953,71 @@ class ReplaceHandlerTest : FunSpec({
         """.trimIndent()
     }
 
-})
\ No newline at end of file
+    test("Test removing a range of a sequence is a single edit") {
+
+        class DContext {
+            val nums = FXCollections.observableArrayList((0 until 50000).toList())
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("[")
+                .bindSeq({ it.nums }, ItemRenderer.asString { "<$it>" })
+                .append("]")
+                .toBoundTemplate(DContext())
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        lt.dataContext.nums.remove(2, 50000)
+
+        lt.value shouldBe "[<0><1>]"
+        mirror.toString() shouldBe lt.value
+        events should haveSize(1)
+
+        lt.dataContext.nums.add(2)
+        lt.dataContext.nums.clear()
+
+        lt.value shouldBe "[]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test adding a block to a sequence is a single edit") {
+
+        class DContext {
+            val nums = FXCollections.observableArrayList(0, 1)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("[")
+                .bindSeq({ it.nums }, ItemRenderer.asString { "<$it>" })
+                .append("]")
+                .toBoundTemplate(DContext())
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        lt.dataContext.nums.addAll(1, (2 until 50000).toList())
+
+        lt.value shouldBe (listOf(0) + (2 until 50000) + listOf(1)).joinToString(separator = "", prefix = "[", postfix = "]") { "<$it>" }
+        mirror.toString() shouldBe lt.value
+        events should haveSize(1)
+        events.clear()
+
+        // the inserted elements are bound to their positions
+        lt.dataContext.nums[2] = -3
+        lt.dataContext.nums.add(7)
+
+        lt.value shouldBe (listOf(0, 2, -3) + (4 until 50000) + listOf(1, 7)).joinToString(separator = "", prefix = "[", postfix = "]") { "<$it>" }
+        mirror.toString() shouldBe lt.value
+        events should haveSize(2)
+    }
+
+})
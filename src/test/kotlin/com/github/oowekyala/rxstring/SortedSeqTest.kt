@@ -0,0 +1,128 @@
+package com.github.oowekyala.rxstring
+
+import io.kotlintest.matchers.haveSize
+import io.kotlintest.should
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.FunSpec
+import javafx.collections.FXCollections
+import org.reactfx.value.Var
+import java.util.concurrent.Executor
+
+/**
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class SortedSeqTest : FunSpec({
+
+    class Item(n: String, rank: Int) {
+        val name = Var.newSimpleVar(n)
+        val rank = Var.newSimpleVar(rank)
+    }
+
+    class DContext(vararg items: Item) {
+        val items = FXCollections.observableArrayList(items.toList())
+    }
+
+    fun sortedTemplate() =
+            LiveTemplate
+                    .newBuilder<DContext>()
+                    .append("[")
+                    .bindSortedSeq({ it.items }, { it.rank }, ItemRenderer.templated<Item> {
+                        it.append("<").bind { it.name }.append(">")
+                    })
+                    .append("]")
+                    .toTemplate()
+
+    test("Test items are displayed in the order of their keys") {
+
+        val lt = sortedTemplate()
+        lt.dataContext = DContext(Item("c", 3), Item("a", 1), Item("b", 2))
+
+        lt.value shouldBe "[<a><b><c>]"
+
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+
+        lt.dataContext.items.add(Item("ab", 1))
+        lt.dataContext.items.add(0, Item("z", 26))
+        lt.value shouldBe "[<a><ab><b><c><z>]"
+        mirror.toString() shouldBe lt.value
+
+        lt.dataContext.items.removeAt(1)
+        lt.dataContext.items.remove(2, 4)
+        lt.value shouldBe "[<a><z>]"
+        mirror.toString() shouldBe lt.value
+
+        // the order of the source is irrelevant
+        FXCollections.reverse(lt.dataContext.items)
+        lt.value shouldBe "[<a><z>]"
+    }
+
+    test("Test a key change moves only the text of its item") {
+
+        val lt = sortedTemplate()
+        lt.dataContext = DContext(Item("a", 1), Item("b", 2), Item("c", 3), Item("d", 4))
+
+        val events = mutableListOf<ReplaceEvent>()
+        val mirror = StringBuilder()
+        lt.addReplaceHandler(mirrorChanges(mirror))
+        lt.addReplaceHandler(recordEvents(events))
+        events.clear()
+
+        val (a, b) = lt.dataContext.items
+
+        a.rank.value = 5
+        lt.value shouldBe "[<b><c><d><a>]"
+        mirror.toString() shouldBe lt.value
+        events shouldBe listOf(ReplaceEvent(1, 4, ""), ReplaceEvent(10, 10, "<a>"))
+        events.clear()
+
+        // same position, nothing happens
+        b.rank.value = 0
+        events should haveSize(0)
+
+        // the moved element is still bound to its item
+        a.name.value = "z"
+        lt.value shouldBe "[<b><c><d><z>]"
+        mirror.toString() shouldBe lt.value
+    }
+
+    test("Test rebinding a sorted sequence") {
+
+        val lt = sortedTemplate()
+        lt.dataContext = DContext(Item("b", 2), Item("a", 1))
+        lt.value shouldBe "[<a><b>]"
+
+        val old = lt.dataContext
+        lt.dataContext = DContext(Item("y", 2), Item("x", 1), Item("w", 3))
+        lt.value shouldBe "[<x><y><w>]"
+
+        // the old context is not observed anymore
+        old.items[0].rank.value = 0
+        old.items.clear()
+        lt.value shouldBe "[<x><y><w>]"
+    }
+
+    test("Test null keys go last, also in a prepared context") {
+
+        class Ranked(val name: String, rank: Int?) {
+            val rank = Var.newSimpleVar<Int?>(rank)
+        }
+
+        class RankedContext(vararg items: Ranked) {
+            val items = FXCollections.observableArrayList(items.toList())
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<RankedContext>()
+                .bindSortedSeq({ it.items }, { it.rank }, { a: Int?, b: Int? -> a!!.compareTo(b!!) }, ItemRenderer.asString<Ranked> { "<${it.name}>" })
+                .toTemplate()
+
+        lt.dataContext = RankedContext(Ranked("n", null), Ranked("b", 2), Ranked("a", 1))
+        lt.value shouldBe "<a><b><n>"
+
+        lt.prepareDataContext(RankedContext(Ranked("y", 2), Ranked("m", null), Ranked("x", 1)), Executor { it.run() }, Executor { it.run() })
+                .get() shouldBe true
+        lt.value shouldBe "<x><y><m>"
+    }
+})
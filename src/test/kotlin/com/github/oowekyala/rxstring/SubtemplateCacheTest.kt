@@ -0,0 +1,123 @@
+package com.github.oowekyala.rxstring
+
+import io.kotlintest.matchers.haveSize
+import io.kotlintest.should
+import io.kotlintest.shouldBe
+import io.kotlintest.specs.FunSpec
+import javafx.collections.FXCollections
+import org.reactfx.value.Var
+
+/**
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class SubtemplateCacheTest : FunSpec({
+
+    class SubDContext(n: String) {
+        val name = Var.newSimpleVar(n)
+    }
+
+    class DContext(vararg names: String) {
+        val subs = FXCollections.observableArrayList(names.map { SubDContext(it) })
+    }
+
+    test("Test moved items reuse their subtemplate") {
+
+        val cache = SubtemplateCache(16)
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .bindTemplatedSeq({ it.subs }, cache) { sub ->
+                    sub.append("<").bind { it.name }.append(">")
+                }
+                .toBoundTemplate(DContext("a", "b", "c"))
+
+        lt.value shouldBe "<a><b><c>"
+
+        cache.hitCount shouldBe 0L
+        cache.missCount shouldBe 3L
+
+        val events = mutableListOf<ReplaceEvent>()
+        lt.addReplaceHandler(recordEvents(events))
+
+        val a = lt.dataContext.subs.removeAt(0)
+        cache.size() shouldBe 1
+        lt.value shouldBe "<b><c>"
+
+        // the parked template is kept up to date
+        a.name.value = "z"
+
+        lt.dataContext.subs.add(a)
+        lt.value shouldBe "<b><c><z>"
+        cache.size() shouldBe 0
+        cache.hitCount shouldBe 1L
+        cache.missCount shouldBe 3L
+
+        events should haveSize(3)
+        events.last() shouldBe ReplaceEvent(6, 6, "<z>")
+
+        a.name.value = "y"
+        lt.value shouldBe "<b><c><y>"
+        events.last() shouldBe ReplaceEvent(7, 8, "y")
+    }
+
+    test("Test cache capacity evicts the eldest subtemplates") {
+
+        val cache = SubtemplateCache(1)
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .bindTemplatedSeq({ it.subs }, cache) { sub ->
+                    sub.append("<").bind { it.name }.append(">")
+                }
+                .toBoundTemplate(DContext("a", "b", "c"))
+
+        val a = lt.dataContext.subs[0]
+        lt.dataContext.subs.remove(0, 2)
+
+        lt.value shouldBe "<c>"
+        cache.size() shouldBe 1
+
+        lt.dataContext.subs.add(a)
+        lt.value shouldBe "<c><a>"
+        cache.hitCount shouldBe 0L
+        cache.missCount shouldBe 4L
+    }
+
+    test("Test an item shown twice gets two subtemplates") {
+
+        val cache = SubtemplateCache(16)
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .bindTemplatedSeq({ it.subs }, cache) { sub ->
+                    sub.append("<").bind { it.name }.append(">")
+                }
+                .toBoundTemplate(DContext("a", "b"))
+
+        val a = lt.dataContext.subs[0]
+        lt.dataContext.subs.add(a)
+
+        lt.value shouldBe "<a><b><a>"
+        cache.hitCount shouldBe 0L
+        cache.missCount shouldBe 3L
+
+        a.name.value = "z"
+        lt.value shouldBe "<z><b><z>"
+
+        // both are parked under the same key, only one is kept
+        lt.dataContext.subs.removeAll(a)
+        lt.value shouldBe "<b>"
+        cache.size() shouldBe 1
+
+        lt.dataContext.subs.setAll(a, lt.dataContext.subs[0], a)
+        lt.value shouldBe "<z><b><z>"
+        // the first slot is rebound, which parks the template of b, then
+        // the parked templates of a and b are reused, and the second a is new
+        cache.hitCount shouldBe 2L
+        cache.missCount shouldBe 4L
+
+        a.name.value = "y"
+        lt.value shouldBe "<y><b><y>"
+    }
+})
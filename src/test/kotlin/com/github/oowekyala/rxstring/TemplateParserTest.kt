@@ -0,0 +1,72 @@
+package com.github.oowekyala.rxstring
+
+import io.kotlintest.shouldBe
+import io.kotlintest.shouldThrow
+import io.kotlintest.specs.FunSpec
+import javafx.collections.FXCollections
+import org.reactfx.value.Var
+
+/**
+ * @author Clément Fournier
+ * @since 1.1
+ */
+class TemplateParserTest : FunSpec({
+
+    class DContext {
+        val name = Var.newSimpleVar("foo")
+        val children = FXCollections.observableArrayList("a", "b")
+        val id = 4
+    }
+
+    test("Test text template binds properties") {
+
+        val lt = LiveTemplate.fromText("Name: \${name} (\${children; sep=', '}) #\${id} $$", DContext::class.java)
+        lt.dataContext = DContext()
+
+        lt.value shouldBe "Name: foo (a, b) #4 $"
+
+        lt.dataContext.name.value = "bar"
+        lt.value shouldBe "Name: bar (a, b) #4 $"
+
+        lt.dataContext.children.add("c")
+        lt.value shouldBe "Name: bar (a, b, c) #4 $"
+    }
+
+    test("Test text template sequence options") {
+
+        val lt = LiveTemplate.fromText("\${ children ; prefix='<', suffix='>', sep='\\'' }", DContext::class.java)
+        lt.dataContext = DContext()
+
+        lt.value shouldBe "<a'b>"
+    }
+
+    test("Test compiled plans are cached by source and data class") {
+
+        val source = "Name: \${name}"
+
+        TemplateParser.getPlan(source, DContext::class.java) shouldBe TemplateParser.getPlan(source, DContext::class.java)
+
+        val copy = LiveTemplate.fromText(source, DContext::class.java)
+        copy.dataContext = DContext()
+        copy.value shouldBe "Name: foo"
+    }
+
+    test("Test malformed text templates") {
+
+        shouldThrow<IllegalArgumentException> {
+            LiveTemplate.fromText("\${name", DContext::class.java)
+        }
+
+        shouldThrow<IllegalArgumentException> {
+            LiveTemplate.fromText("\${nope}", DContext::class.java)
+        }
+
+        shouldThrow<IllegalArgumentException> {
+            LiveTemplate.fromText("\${name; sep=','}", DContext::class.java)
+        }
+
+        shouldThrow<IllegalArgumentException> {
+            LiveTemplate.fromText("\${children; sep=','", DContext::class.java)
+        }
+    }
+})
@@ -5,6 +5,11 @@ import io.kotlintest.specs.FunSpec
 import org.reactfx.collection.LiveArrayList
 import org.reactfx.collection.LiveList
 import org.reactfx.value.Var
+import java.time.Duration
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
 
 /**
  * @author Clément Fournier
@@ -528,4 +533,87 @@ class ValBehaviorTest : FunSpec({
 
         vals shouldBe listOf(null) // just one value
     }
-})
\ No newline at end of file
+
+    test("Test latest-wins rebind policy") {
+
+        class DContext(n: String) {
+            val name = Var.newSimpleVar(n)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("[").bind { it.name }.append("]")
+                .toTemplate()
+
+        val scheduler = Executors.newSingleThreadScheduledExecutor()
+        val applyQueue = LinkedBlockingQueue<Runnable>()
+        lt.rebindPolicy = RebindPolicy.latestWins(Duration.ofMillis(200), scheduler, Executor { applyQueue += it })
+
+        val vals = mutableListOf<String>()
+        lt.values().subscribe { vals += it }
+
+        (1..5).forEach { lt.requestDataContext(DContext("ctx$it")) }
+
+        lt.value shouldBe null
+
+        applyQueue.poll(5, TimeUnit.SECONDS)!!.run()
+        scheduler.shutdown()
+
+        lt.value shouldBe "[ctx5]"
+        vals shouldBe listOf(null, "[ctx5]")
+        lt.elidedRebindCount shouldBe 4L
+        applyQueue.isEmpty() shouldBe true
+    }
+
+    test("Test pending requests are dropped when the data context is set or bound") {
+
+        class DContext(n: String) {
+            val name = Var.newSimpleVar(n)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("[").bind { it.name }.append("]")
+                .toTemplate()
+
+        val scheduler = Executors.newSingleThreadScheduledExecutor()
+        val applyQueue = LinkedBlockingQueue<Runnable>()
+        lt.rebindPolicy = RebindPolicy.latestWins(Duration.ZERO, scheduler, Executor { applyQueue += it })
+
+        lt.requestDataContext(DContext("a"))
+        val stale = applyQueue.poll(5, TimeUnit.SECONDS)!!
+        lt.dataContext = DContext("b")
+        stale.run()
+
+        lt.value shouldBe "[b]"
+        lt.elidedRebindCount shouldBe 1L
+
+        val bound = Var.newSimpleVar(lt.dataContext)
+        lt.requestDataContext(DContext("c"))
+        val unbound = applyQueue.poll(5, TimeUnit.SECONDS)!!
+        lt.dataContextProperty().bind(bound)
+        unbound.run()
+        scheduler.shutdown()
+
+        lt.value shouldBe "[b]"
+        lt.elidedRebindCount shouldBe 2L
+    }
+
+    test("Test immediate rebind policy") {
+
+        class DContext(n: String) {
+            val name = Var.newSimpleVar(n)
+        }
+
+        val lt = LiveTemplate
+                .newBuilder<DContext>()
+                .append("[").bind { it.name }.append("]")
+                .toTemplate()
+
+        lt.requestDataContext(DContext("a"))
+        lt.value shouldBe "[a]"
+        lt.requestDataContext(DContext("b"))
+        lt.value shouldBe "[b]"
+        lt.elidedRebindCount shouldBe 0L
+    }
+})